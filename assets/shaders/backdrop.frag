@@ -0,0 +1,56 @@
+// The editor background: a diagonal pattern fixed to the screen, with the world's x and y axes over it.
+// Drawn as one quad over the camera's view, see Backdrop.java
+
+#ifdef GL_ES
+precision highp float;
+#endif
+
+varying vec4 v_color;
+varying vec2 v_texCoords;
+varying vec2 v_world;
+
+uniform sampler2D u_texture;
+
+// world units covered by one pixel of the window, lines are antialiased over that
+uniform float u_pixel_size;
+
+// world position of the bottom left of the view, and world units per unit of the 1280x720 screen layout
+uniform vec2 u_view_origin;
+uniform float u_screen_scale;
+
+const vec4 background_color = vec4(48.0, 48.0, 48.0, 255.0) / 255.0;
+const vec4 pattern_color    = vec4(39.0, 42.0, 56.0, 255.0) / 255.0;
+
+// each pattern texel covers this many screen units, the pattern repeats every 8 texels
+const float pattern_scale = 4.0;
+
+const vec4 x_axis_color = vec4(178.0,  34.0, 34.0, 255.0) / 255.0; // Color.FIREBRICK
+const vec4 y_axis_color = vec4( 34.0, 139.0, 34.0, 255.0) / 255.0; // Color.FOREST
+const float axis_half_width = 1.0;
+const float axis_length = 2000.0;
+
+// how much of a pixel at distance d from the middle of a line the line covers
+float coverage(float d, float half_width) {
+    float half_pixel = 0.5 * u_pixel_size;
+    float overlap = min(d + half_pixel, half_width) - max(d - half_pixel, -half_width);
+    return clamp(overlap / u_pixel_size, 0.0, 1.0);
+}
+
+void main() {
+    // NOTE: rows counted top down within the repeat, like the image this replaced
+    vec2 screen = (v_world - u_view_origin) / u_screen_scale;
+    vec2 texel = mod(floor(screen / pattern_scale), 8.0);
+    float x = texel.x;
+    float y = 7.0 - texel.y;
+    bool on_pattern = (x + y == 7.0) || (x == y && y >= 4.0);
+    vec4 color = on_pattern ? pattern_color : background_color;
+
+    // y axis over the x axis
+    vec2 d = abs(v_world);
+    float x_axis = coverage(d.y, axis_half_width) * step(d.x, axis_length);
+    float y_axis = coverage(d.x, axis_half_width) * step(d.y, axis_length);
+    color = mix(color, x_axis_color, x_axis);
+    color = mix(color, y_axis_color, y_axis);
+
+    gl_FragColor = v_color * color * texture2D(u_texture, v_texCoords);
+}
@@ -0,0 +1,45 @@
+// A tile layer's background and grid lines, one quad over the visible cells, see Layer.Tiles.render()
+
+#ifdef GL_ES
+precision highp float;
+#endif
+
+varying vec4 v_color;
+varying vec2 v_texCoords;
+varying vec2 v_world;
+
+uniform sampler2D u_texture;
+
+// world units covered by one pixel of the window, lines are antialiased over that
+uniform float u_pixel_size;
+
+// world position of the layer's bottom left cell, and the cell size in world units
+uniform vec2 u_grid_origin;
+uniform float u_grid_size;
+
+uniform vec4 u_fill_color;
+uniform vec4 u_line_color;
+
+const float line_half_width = 0.5;
+
+// how much of a pixel at distance d from the middle of a line the line covers
+float coverage(float d, float half_width) {
+    float half_pixel = 0.5 * u_pixel_size;
+    float overlap = min(d + half_pixel, half_width) - max(d - half_pixel, -half_width);
+    return clamp(overlap / u_pixel_size, 0.0, 1.0);
+}
+
+void main() {
+    // distance to the nearest grid line in x and y
+    vec2 cell = mod(v_world - u_grid_origin, u_grid_size);
+    vec2 d = min(cell, u_grid_size - cell);
+    float line = max(coverage(d.x, line_half_width), coverage(d.y, line_half_width));
+
+    // the line over the fill, the same as blending one on top of the other
+    float line_alpha = u_line_color.a * line;
+    float fill_alpha = u_fill_color.a * (1.0 - line_alpha);
+    float alpha = line_alpha + fill_alpha;
+    vec3 rgb = (u_line_color.rgb * line_alpha + u_fill_color.rgb * fill_alpha) / max(alpha, 0.001);
+
+    gl_FragColor = v_color * vec4(rgb, alpha) * texture2D(u_texture, v_texCoords);
+}
@@ -0,0 +1,20 @@
+// SpriteBatch's vertex shader, plus the untransformed position for shaders that draw in world units
+
+attribute vec4 a_position;
+attribute vec4 a_color;
+attribute vec2 a_texCoord0;
+
+uniform mat4 u_projTrans;
+
+varying vec4 v_color;
+varying vec2 v_texCoords;
+varying vec2 v_world;
+
+void main() {
+    v_color = a_color;
+    // NOTE: SpriteBatch packs colors into a float, which loses a little alpha, same fix as its own shader
+    v_color.a = v_color.a * (255.0 / 254.0);
+    v_texCoords = a_texCoord0;
+    v_world = a_position.xy;
+    gl_Position = u_projTrans * a_position;
+}
@@ -0,0 +1,155 @@
+package lando.systems.led.benchmark;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.Array;
+import lando.systems.led.Assets;
+import lando.systems.led.Config;
+import lando.systems.led.input.CameraInput;
+import lando.systems.led.input.Inputs;
+import lando.systems.led.world.Level;
+import lando.systems.led.world.Tilesets;
+import lando.systems.led.world.World;
+import space.earlygrey.shapedrawer.ShapeDrawer;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Checks that drawing the active level takes the same number of gl draw calls however many tiles it has.
+ * <p>
+ * Each size gets a world with one level, zoomed so the whole level is on screen and every tile gets submitted.
+ * It's drawn with a real SpriteBatch and ShapeDrawer, on a {@link NullGL20} wrapped in a GLProfiler,
+ * so the draw calls and texture binds counted are the ones the editor would make on a gpu.
+ * Sizes stay small enough that the tiles fit in one batch, past that every Config.batch_sprites tiles is another call.
+ * <p>
+ * Run with: ./gradlew benchmark:checkDrawCalls
+ * <p>
+ * Exits with status 1 if the counts change with the level size.
+ */
+public class DrawCallCheck extends ApplicationAdapter {
+
+    // tiles along each side of the level, 256 up to 4096 tiles
+    static final int[] sizes = { 16, 32, 48, 64 };
+
+    // shows 1600 x 900 world pixels, all of the largest level and still closer than the level of detail threshold
+    static final float zoom = 5f;
+
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile boolean failed = false;
+
+    SpriteBatch batch;
+    ShapeDrawer drawer;
+    GLProfiler gl_profiler;
+    OrthographicCamera camera;
+    World world;
+
+    final Array<Level> levels = new Array<>();
+
+    public static void main(String[] args) throws InterruptedException {
+        var check = new DrawCallCheck();
+        var config = new HeadlessApplicationConfiguration();
+        config.updatesPerSecond = -1;
+        new HeadlessApplication(check, config);
+        check.done.await();
+        System.exit(check.failed ? 1 : 0);
+    }
+
+    @Override
+    public void create() {
+        try {
+            setup();
+
+            var first_draw_calls = -1;
+            var first_texture_binds = -1;
+            for (var size : sizes) {
+                world = new World("Draw calls");
+                SyntheticWorld.build(world, 1, size, size, 1, levels);
+
+                var level = levels.first();
+                camera.zoom = zoom;
+                camera.position.set(level.pixel_bounds.x + level.pixel_bounds.w / 2f, level.pixel_bounds.y + level.pixel_bounds.h / 2f, 0);
+                camera.update();
+
+                // NOTE: the first frame builds the tile chunks and lod textures, count the one after
+                frame();
+                gl_profiler.reset();
+                frame();
+
+                var draw_calls = gl_profiler.getDrawCalls();
+                var texture_binds = gl_profiler.getTextureBindings();
+                // NOTE: the vertex count is really the index count, which is 6 for each sprite
+                var sprites = (int) gl_profiler.getVertexCount().total / 6;
+                System.out.printf(Locale.ROOT, "%3dx%-3d tiles %5d | sprites %5d  draw calls %3d  texture binds %3d%n",
+                        size, size, size * size, sprites, draw_calls, texture_binds);
+
+                if (first_draw_calls == -1) {
+                    first_draw_calls = draw_calls;
+                    first_texture_binds = texture_binds;
+                } else if (draw_calls != first_draw_calls || texture_binds != first_texture_binds) {
+                    System.out.printf(Locale.ROOT, "FAILED %dx%d: %d draw calls and %d texture binds, %d and %d at %dx%d%n",
+                            size, size, draw_calls, texture_binds, first_draw_calls, first_texture_binds, sizes[0], sizes[0]);
+                    failed = true;
+                }
+
+                world.dispose();
+                world = null;
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+            failed = true;
+        } finally {
+            teardown();
+            done.countDown();
+        }
+    }
+
+    void setup() {
+        Headless.init();
+        Assets.init();
+
+        gl_profiler = new GLProfiler(Gdx.graphics);
+        gl_profiler.enable();
+
+        batch = new SpriteBatch(Config.batch_sprites);
+        drawer = new ShapeDrawer(batch, Tilesets.white_pixel());
+
+        camera = new OrthographicCamera();
+        Inputs.init(null, new CameraInput(camera), null);
+    }
+
+    void teardown() {
+        if (world != null) world.dispose();
+        Tilesets.dispose();
+        if (Assets.manager != null) Assets.dispose();
+        if (batch != null) batch.dispose();
+        if (gl_profiler != null) gl_profiler.disable();
+        Gdx.app.exit();
+    }
+
+    /**
+     * The world part of an editor frame
+     */
+    void frame() {
+        Assets.update();
+        Tilesets.update();
+        world.update(1 / 60f);
+
+        // NOTE: same as Main, releasing the last world's tileset repacks the atlas, which moves the white pixel
+        var white_pixel = Tilesets.white_pixel();
+        if (drawer.getRegion() != white_pixel) {
+            drawer.setTextureRegion(white_pixel);
+        }
+
+        batch.setProjectionMatrix(camera.combined);
+        batch.begin();
+        world.render(drawer, batch);
+        batch.end();
+    }
+
+}
@@ -0,0 +1,69 @@
+package lando.systems.led.benchmark;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.backends.headless.mock.graphics.MockGraphics;
+import com.badlogic.gdx.graphics.GL20;
+import lando.systems.led.Assets;
+import lando.systems.led.Config;
+
+/**
+ * Stands in for the gpu when running without a window.
+ * <p>
+ * The headless backend leaves Gdx.gl null and reports a 0x0 screen, which breaks texture uploads
+ * and makes every scissor rect empty. This swaps in a {@link NullGL20} and a screen the size of the window,
+ * so textures, atlas pages, and clipping behave the way they do on the desktop.
+ */
+public class Headless {
+
+    private static HeadlessApplication app;
+
+    /**
+     * For code that runs outside of an ApplicationListener, like the jmh benchmarks:
+     * starts an idle headless application so Gdx.app and Gdx.files are there, then does init() and loads the assets.
+     * Only the first call does anything
+     */
+    public static void start() {
+        if (app != null) return;
+
+        var config = new HeadlessApplicationConfiguration();
+        config.updatesPerSecond = 1;
+        app = new HeadlessApplication(new ApplicationAdapter() {}, config);
+        init();
+        Assets.init();
+        Assets.manager.finishLoading();
+        Assets.update();
+    }
+
+    public static void init() {
+        var gl = new NullGL20();
+        Gdx.gl = gl;
+        Gdx.gl20 = gl;
+        Gdx.graphics = new WindowGraphics(Config.window_width, Config.window_height);
+    }
+
+    static class WindowGraphics extends MockGraphics {
+        final int width;
+        final int height;
+
+        WindowGraphics(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override public int getWidth()             { return width; }
+        @Override public int getHeight()            { return height; }
+        @Override public int getBackBufferWidth()   { return width; }
+        @Override public int getBackBufferHeight()  { return height; }
+        @Override public GL20 getGL20()             { return Gdx.gl20; }
+
+        // NOTE: GLProfiler swaps its interceptor in and out through here
+        @Override public void setGL20(GL20 gl20) {
+            Gdx.gl = gl20;
+            Gdx.gl20 = gl20;
+        }
+    }
+
+}
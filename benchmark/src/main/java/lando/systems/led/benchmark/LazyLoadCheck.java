@@ -0,0 +1,101 @@
+package lando.systems.led.benchmark;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.utils.Array;
+import lando.systems.led.Assets;
+import lando.systems.led.input.CameraInput;
+import lando.systems.led.input.Inputs;
+import lando.systems.led.world.Level;
+import lando.systems.led.world.Tilesets;
+import lando.systems.led.world.World;
+import lando.systems.led.world.WorldFile;
+import lando.systems.led.world.WorldSnapshot;
+
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that loading a world only decodes the level that ends up active,
+ * the rest should keep their layers encoded until they're drawn or edited.
+ * <p>
+ * Writes a synthetic world to a temp file and loads it into a fresh world, the editor's own world file isn't touched.
+ * <p>
+ * Run with: ./gradlew benchmark:checkLazyLoad
+ * <p>
+ * Exits with status 1 if any other level was decoded.
+ */
+public class LazyLoadCheck extends ApplicationAdapter {
+
+    static final int num_levels = 16;
+    static final int level_size = 32;
+
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile boolean failed = false;
+
+    World saved_world;
+    World loaded_world;
+
+    final Array<Level> levels = new Array<>();
+
+    public static void main(String[] args) throws InterruptedException {
+        var check = new LazyLoadCheck();
+        var config = new HeadlessApplicationConfiguration();
+        config.updatesPerSecond = -1;
+        new HeadlessApplication(check, config);
+        check.done.await();
+        System.exit(check.failed ? 1 : 0);
+    }
+
+    @Override
+    public void create() {
+        try {
+            Headless.init();
+            Assets.init();
+            Inputs.init(null, new CameraInput(new OrthographicCamera()), null);
+
+            saved_world = new World("Lazy load");
+            var area = SyntheticWorld.build(saved_world, num_levels, level_size, level_size, 1, levels);
+
+            var path = Files.createTempFile("lazy-load-check", ".led");
+            try {
+                new WorldFile().write(new WorldSnapshot(saved_world), path, new AtomicInteger());
+
+                loaded_world = new World("Lazy load");
+                loaded_world.load(path);
+            } finally {
+                Files.deleteIfExists(path);
+            }
+
+            var num_decoded = 0;
+            for (var level : loaded_world.levels_overlapping(area, levels)) {
+                if (level.is_loaded()) {
+                    num_decoded++;
+                }
+            }
+            var active_level = loaded_world.get_active_level();
+            System.out.printf(Locale.ROOT, "levels %d | decoded %d%n", levels.size, num_decoded);
+
+            if (levels.size != num_levels || num_decoded != 1 || active_level == null || !active_level.is_loaded()) {
+                System.out.printf(Locale.ROOT, "FAILED: expected only the active level of %d to be decoded%n", num_levels);
+                failed = true;
+            }
+        } catch (Throwable t) {
+            t.printStackTrace();
+            failed = true;
+        } finally {
+            if (saved_world != null) saved_world.dispose();
+            if (loaded_world != null) loaded_world.dispose();
+            Tilesets.dispose();
+            if (Assets.manager != null) Assets.dispose();
+            Gdx.app.exit();
+            done.countDown();
+        }
+    }
+
+}
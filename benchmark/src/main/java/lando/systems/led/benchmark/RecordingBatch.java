@@ -0,0 +1,296 @@
+package lando.systems.led.benchmark;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Affine2;
+import com.badlogic.gdx.math.Matrix4;
+import lando.systems.led.Config;
+
+/**
+ * A Batch that doesn't draw anything, it counts what a SpriteBatch would have sent to the gpu instead.
+ * <p>
+ * Flushes happen in the same places a SpriteBatch flushes: texture switches, a full buffer,
+ * matrix / blending / shader changes while drawing, and end(). Each flush with anything in it
+ * counts as one render call, so the counts line up with SpriteBatch.renderCalls on a real gpu.
+ */
+public class RecordingBatch implements Batch {
+
+    // same as the editor's SpriteBatch
+    public static final int max_sprites = Config.batch_sprites;
+
+    // floats per sprite, 4 vertices of position, color and uv
+    static final int sprite_size = 20;
+
+    // totals since the last reset()
+    public int render_calls;
+    public int sprites;
+    public int texture_switches;
+    public int flushes;
+
+    private int buffered_sprites;
+    private Texture last_texture;
+    private boolean drawing;
+    private boolean blending_disabled;
+    private int blend_src_func = GL20.GL_SRC_ALPHA;
+    private int blend_dst_func = GL20.GL_ONE_MINUS_SRC_ALPHA;
+    private int blend_src_func_alpha = GL20.GL_SRC_ALPHA;
+    private int blend_dst_func_alpha = GL20.GL_ONE_MINUS_SRC_ALPHA;
+    private ShaderProgram shader;
+
+    private final Color color = new Color(1, 1, 1, 1);
+    private float packed_color = Color.WHITE_FLOAT_BITS;
+    private final Matrix4 projection_matrix = new Matrix4();
+    private final Matrix4 transform_matrix = new Matrix4();
+
+    public void reset() {
+        render_calls = 0;
+        sprites = 0;
+        texture_switches = 0;
+        flushes = 0;
+    }
+
+    private void submit(Texture texture, int num_sprites) {
+        if (!drawing) {
+            throw new IllegalStateException("RecordingBatch.begin must be called before draw.");
+        }
+        if (texture != last_texture) {
+            flush();
+            last_texture = texture;
+            texture_switches++;
+        } else if (buffered_sprites + num_sprites > max_sprites) {
+            flush();
+        }
+        buffered_sprites += num_sprites;
+        sprites += num_sprites;
+    }
+
+    @Override
+    public void begin() {
+        if (drawing) {
+            throw new IllegalStateException("RecordingBatch.end must be called before begin.");
+        }
+        drawing = true;
+    }
+
+    @Override
+    public void end() {
+        if (!drawing) {
+            throw new IllegalStateException("RecordingBatch.begin must be called before end.");
+        }
+        if (buffered_sprites > 0) {
+            flush();
+        }
+        last_texture = null;
+        drawing = false;
+    }
+
+    @Override
+    public void flush() {
+        flushes++;
+        if (buffered_sprites == 0) return;
+
+        render_calls++;
+        buffered_sprites = 0;
+    }
+
+    @Override
+    public void setColor(Color tint) {
+        color.set(tint);
+        packed_color = tint.toFloatBits();
+    }
+
+    @Override
+    public void setColor(float r, float g, float b, float a) {
+        color.set(r, g, b, a);
+        packed_color = color.toFloatBits();
+    }
+
+    @Override
+    public Color getColor() {
+        return color;
+    }
+
+    @Override
+    public void setPackedColor(float packed_color) {
+        Color.abgr8888ToColor(color, packed_color);
+        this.packed_color = packed_color;
+    }
+
+    @Override
+    public float getPackedColor() {
+        return packed_color;
+    }
+
+    // ------------------------------------------------------------------------
+    // Draws
+
+    @Override
+    public void draw(Texture texture, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) {
+        submit(texture, 1);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height, int srcX, int srcY, int srcWidth, int srcHeight, boolean flipX, boolean flipY) {
+        submit(texture, 1);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, int srcX, int srcY, int srcWidth, int srcHeight) {
+        submit(texture, 1);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height, float u, float v, float u2, float v2) {
+        submit(texture, 1);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y) {
+        submit(texture, 1);
+    }
+
+    @Override
+    public void draw(Texture texture, float x, float y, float width, float height) {
+        submit(texture, 1);
+    }
+
+    @Override
+    public void draw(Texture texture, float[] spriteVertices, int offset, int count) {
+        // NOTE: like SpriteBatch, big vertex arrays are split over as many flushes as they need
+        var num_sprites = count / sprite_size;
+        while (num_sprites > 0) {
+            var num = Math.min(num_sprites, max_sprites);
+            submit(texture, num);
+            num_sprites -= num;
+        }
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y) {
+        submit(region.getTexture(), 1);
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float width, float height) {
+        submit(region.getTexture(), 1);
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation) {
+        submit(region.getTexture(), 1);
+    }
+
+    @Override
+    public void draw(TextureRegion region, float x, float y, float originX, float originY, float width, float height, float scaleX, float scaleY, float rotation, boolean clockwise) {
+        submit(region.getTexture(), 1);
+    }
+
+    @Override
+    public void draw(TextureRegion region, float width, float height, Affine2 transform) {
+        submit(region.getTexture(), 1);
+    }
+
+    // ------------------------------------------------------------------------
+    // State changes, these flush whatever is buffered like SpriteBatch does
+
+    @Override
+    public void disableBlending() {
+        if (blending_disabled) return;
+        flush();
+        blending_disabled = true;
+    }
+
+    @Override
+    public void enableBlending() {
+        if (!blending_disabled) return;
+        flush();
+        blending_disabled = false;
+    }
+
+    @Override
+    public void setBlendFunction(int srcFunc, int dstFunc) {
+        setBlendFunctionSeparate(srcFunc, dstFunc, srcFunc, dstFunc);
+    }
+
+    @Override
+    public void setBlendFunctionSeparate(int srcFuncColor, int dstFuncColor, int srcFuncAlpha, int dstFuncAlpha) {
+        if (blend_src_func == srcFuncColor && blend_dst_func == dstFuncColor
+         && blend_src_func_alpha == srcFuncAlpha && blend_dst_func_alpha == dstFuncAlpha) return;
+        flush();
+        blend_src_func = srcFuncColor;
+        blend_dst_func = dstFuncColor;
+        blend_src_func_alpha = srcFuncAlpha;
+        blend_dst_func_alpha = dstFuncAlpha;
+    }
+
+    @Override
+    public int getBlendSrcFunc() {
+        return blend_src_func;
+    }
+
+    @Override
+    public int getBlendDstFunc() {
+        return blend_dst_func;
+    }
+
+    @Override
+    public int getBlendSrcFuncAlpha() {
+        return blend_src_func_alpha;
+    }
+
+    @Override
+    public int getBlendDstFuncAlpha() {
+        return blend_dst_func_alpha;
+    }
+
+    @Override
+    public Matrix4 getProjectionMatrix() {
+        return projection_matrix;
+    }
+
+    @Override
+    public Matrix4 getTransformMatrix() {
+        return transform_matrix;
+    }
+
+    @Override
+    public void setProjectionMatrix(Matrix4 projection) {
+        if (drawing) flush();
+        projection_matrix.set(projection);
+    }
+
+    @Override
+    public void setTransformMatrix(Matrix4 transform) {
+        if (drawing) flush();
+        transform_matrix.set(transform);
+    }
+
+    @Override
+    public void setShader(ShaderProgram shader) {
+        if (drawing) flush();
+        this.shader = shader;
+    }
+
+    @Override
+    public ShaderProgram getShader() {
+        return shader;
+    }
+
+    @Override
+    public boolean isBlendingEnabled() {
+        return !blending_disabled;
+    }
+
+    @Override
+    public boolean isDrawing() {
+        return drawing;
+    }
+
+    @Override
+    public void dispose() {}
+
+}
@@ -0,0 +1,284 @@
+package lando.systems.led.benchmark;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Array;
+import lando.systems.led.Assets;
+import lando.systems.led.Backdrop;
+import lando.systems.led.Config;
+import lando.systems.led.input.CameraInput;
+import lando.systems.led.input.Inputs;
+import lando.systems.led.utils.RectI;
+import lando.systems.led.world.Level;
+import lando.systems.led.world.Tilesets;
+import lando.systems.led.world.World;
+import space.earlygrey.shapedrawer.ShapeDrawer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Renders a synthetic world without a window and reports what each frame costs.
+ * <p>
+ * The camera pans across the whole world twice, once zoomed in like when editing a level
+ * and once zoomed out past the level of detail threshold. Each frame runs the same update and render
+ * the editor does (minus imgui), into a {@link RecordingBatch} that counts render calls instead of drawing.
+ * Per frame it measures cpu time and the bytes allocated on the render thread.
+ * <p>
+ * Run with: ./gradlew benchmark:run --args="--levels 100 --cols 64 --rows 64"
+ * <p>
+ * Options, all optional:
+ * <pre>
+ *   --levels N       number of levels (50)
+ *   --cols N         tile columns per level (64)
+ *   --rows N         tile rows per level (64)
+ *   --frames N       measured frames per pass (600)
+ *   --warmup N       unmeasured frames before each pass (600)
+ *   --seed N         seed for the tile contents (1)
+ *   --max-p95-ms X   fail if a pass's 95th percentile frame time is over X
+ *   --max-calls N    fail if a pass averages more than N render calls a frame
+ *   --max-bytes N    fail if a pass averages more than N bytes allocated a frame
+ * </pre>
+ * Exits with status 1 when a limit is exceeded, so it can gate a build.
+ */
+public class RenderBenchmark extends ApplicationAdapter {
+
+    static class Options {
+        int levels = 50;
+        int cols = 64;
+        int rows = 64;
+        int frames = 600;
+        int warmup = 600;
+        long seed = 1;
+        double max_p95_ms = -1;
+        double max_calls = -1;
+        double max_bytes = -1;
+
+        static Options parse(String[] args) {
+            var options = new Options();
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                var value = args[i + 1];
+                switch (args[i]) {
+                    case "--levels"     -> options.levels = Integer.parseInt(value);
+                    case "--cols"       -> options.cols = Integer.parseInt(value);
+                    case "--rows"       -> options.rows = Integer.parseInt(value);
+                    case "--frames"     -> options.frames = Integer.parseInt(value);
+                    case "--warmup"     -> options.warmup = Integer.parseInt(value);
+                    case "--seed"       -> options.seed = Long.parseLong(value);
+                    case "--max-p95-ms" -> options.max_p95_ms = Double.parseDouble(value);
+                    case "--max-calls"  -> options.max_calls = Double.parseDouble(value);
+                    case "--max-bytes"  -> options.max_bytes = Double.parseDouble(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            return options;
+        }
+    }
+
+    /**
+     * Measurements for every frame of a pass
+     */
+    static class Pass {
+        final String name;
+        final float zoom;
+        final long[] nanos;
+        final long[] bytes;
+        final int[] render_calls;
+        final int[] sprites;
+        final int[] texture_switches;
+
+        Pass(String name, float zoom, int frames) {
+            this.name = name;
+            this.zoom = zoom;
+            this.nanos = new long[frames];
+            this.bytes = new long[frames];
+            this.render_calls = new int[frames];
+            this.sprites = new int[frames];
+            this.texture_switches = new int[frames];
+        }
+
+        static double percentile_ms(long[] sorted, double percentile) {
+            var index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[MathUtils.clamp(index, 0, sorted.length - 1)] / 1e6;
+        }
+
+        static double mean(long[] values) {
+            var total = 0.0;
+            for (var value : values) total += value;
+            return total / values.length;
+        }
+
+        static double mean(int[] values) {
+            var total = 0.0;
+            for (var value : values) total += value;
+            return total / values.length;
+        }
+    }
+
+    final Options options;
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile boolean failed = false;
+
+    RecordingBatch batch;
+    ShapeDrawer drawer;
+    OrthographicCamera camera;
+    OrthographicCamera screen_camera;
+    World world;
+
+    final Array<Level> levels = new Array<>();
+    RectI world_bounds;
+
+    // NOTE: com.sun.management has the per thread allocation counter, it's there in every hotspot jvm
+    final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    RenderBenchmark(Options options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        var benchmark = new RenderBenchmark(Options.parse(args));
+        var config = new HeadlessApplicationConfiguration();
+        config.updatesPerSecond = -1;
+        new HeadlessApplication(benchmark, config);
+        benchmark.done.await();
+        System.exit(benchmark.failed ? 1 : 0);
+    }
+
+    @Override
+    public void create() {
+        try {
+            setup();
+            var close = new Pass("close", 2f, options.frames);
+            var far = new Pass("far", Level.lod_zoom_threshold * 1.5f, options.frames);
+            run(close);
+            run(far);
+            report(close);
+            report(far);
+        } catch (Throwable t) {
+            t.printStackTrace();
+            failed = true;
+        } finally {
+            teardown();
+            done.countDown();
+        }
+    }
+
+    void setup() {
+        Headless.init();
+        Assets.init();
+
+        batch = new RecordingBatch();
+        drawer = new ShapeDrawer(batch, Tilesets.white_pixel());
+
+        camera = new OrthographicCamera();
+        screen_camera = new OrthographicCamera();
+        screen_camera.setToOrtho(false, Config.window_width, Config.window_height);
+        screen_camera.update();
+        Inputs.init(null, new CameraInput(camera), null);
+
+        world = new World("Benchmark");
+        world_bounds = SyntheticWorld.build(world, options.levels, options.cols, options.rows, options.seed, levels);
+
+        var tiles = (long) options.levels * options.cols * options.rows;
+        System.out.printf(Locale.ROOT, "%d levels of %dx%d tiles, %d tiles total, %d tileset textures%n",
+                options.levels, options.cols, options.rows, tiles, Tilesets.num_textures());
+    }
+
+    void teardown() {
+        if (world != null) world.dispose();
+        Tilesets.dispose();
+        if (Assets.manager != null) Assets.dispose();
+        Gdx.app.exit();
+    }
+
+    void run(Pass pass) {
+        // NOTE: warmup goes over the same camera positions as the measured frames,
+        //  so buffers that grow to fit what's on screen are already full size by the time it counts
+        var frames = options.frames;
+        for (int i = 0; i < options.warmup; i++) {
+            frame(pass, i % frames, frames);
+        }
+
+        for (int i = 0; i < frames; i++) {
+            batch.reset();
+            var start_bytes = threads.getCurrentThreadAllocatedBytes();
+            var start_nanos = System.nanoTime();
+
+            frame(pass, i, frames);
+
+            pass.nanos[i] = System.nanoTime() - start_nanos;
+            pass.bytes[i] = threads.getCurrentThreadAllocatedBytes() - start_bytes;
+            pass.render_calls[i] = batch.render_calls;
+            pass.sprites[i] = batch.sprites;
+            pass.texture_switches[i] = batch.texture_switches;
+        }
+    }
+
+    /**
+     * One editor frame, with the camera moved along a loop around the world
+     */
+    void frame(Pass pass, int frame, int num_frames) {
+        var angle = MathUtils.PI2 * frame / num_frames;
+        camera.zoom = pass.zoom;
+        camera.position.set(
+                world_bounds.x + world_bounds.w * (0.5f + 0.4f * MathUtils.cos(angle)),
+                world_bounds.y + world_bounds.h * (0.5f + 0.4f * MathUtils.sin(angle)),
+                0);
+        camera.update();
+
+        var dt = 1 / 60f;
+        Assets.update();
+        Tilesets.update();
+        world.update(dt);
+
+        batch.setProjectionMatrix(camera.combined);
+        batch.begin();
+        Backdrop.render(batch, Inputs.camera_input, screen_camera);
+        batch.end();
+
+        batch.setProjectionMatrix(camera.combined);
+        batch.begin();
+        world.render(drawer, batch);
+        batch.end();
+    }
+
+    void report(Pass pass) {
+        var sorted = pass.nanos.clone();
+        Arrays.sort(sorted);
+
+        var p95 = Pass.percentile_ms(sorted, 0.95);
+        var calls = Pass.mean(pass.render_calls);
+        var bytes = Pass.mean(pass.bytes);
+
+        System.out.printf(Locale.ROOT, "%-6s zoom %5.2f | ms mean %6.3f  p50 %6.3f  p95 %6.3f  p99 %6.3f  max %6.3f"
+                        + " | per frame: render calls %7.1f  sprites %9.1f  texture switches %6.1f  bytes %10.1f%n",
+                pass.name, pass.zoom,
+                Pass.mean(pass.nanos) / 1e6,
+                Pass.percentile_ms(sorted, 0.50),
+                p95,
+                Pass.percentile_ms(sorted, 0.99),
+                sorted[sorted.length - 1] / 1e6,
+                calls,
+                Pass.mean(pass.sprites),
+                Pass.mean(pass.texture_switches),
+                bytes);
+
+        check(pass, "p95 ms", p95, options.max_p95_ms);
+        check(pass, "render calls", calls, options.max_calls);
+        check(pass, "bytes", bytes, options.max_bytes);
+    }
+
+    void check(Pass pass, String what, double value, double limit) {
+        if (limit >= 0 && value > limit) {
+            System.out.printf(Locale.ROOT, "FAILED %s: %s %.3f is over the limit of %.3f%n", pass.name, what, value, limit);
+            failed = true;
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package lando.systems.led.benchmark;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import lando.systems.led.Assets;
+import lando.systems.led.utils.Point;
+import lando.systems.led.utils.RectI;
+import lando.systems.led.world.Layer;
+import lando.systems.led.world.Level;
+import lando.systems.led.world.Tile;
+import lando.systems.led.world.Tilesets;
+import lando.systems.led.world.World;
+
+/**
+ * Builds worlds of a given size for benchmarking, the same every time for the same settings.
+ * <p>
+ * Levels are laid out in a square grid with a gap between them, each with one tile layer
+ * filled with random tiles from the tileset, and a few empty cells mixed in.
+ * Nothing here goes through the journal or the undo history.
+ */
+public class SyntheticWorld {
+
+    public static final String default_tileset = "tilesets/paper-pixels8.png";
+    public static final int default_tileset_grid_size = 8;
+
+    // space between neighboring levels, in world pixels
+    static final int gap = 64;
+
+    // fraction of the cells left empty
+    static final float empty_fraction = 0.2f;
+
+    /**
+     * Add the levels to the world, waits for the tileset to load so the tiles can be filled in.
+     * Assets have to be initialized first
+     *
+     * @return the world space area covered by the levels
+     */
+    public static RectI build(World world, int num_levels, int cols, int rows, long seed, Array<Level> out_levels) {
+        var grid_size = Layer.GridAttrib.default_size;
+        var level_w = cols * grid_size;
+        var level_h = rows * grid_size;
+        var per_row = (int) Math.ceil(Math.sqrt(num_levels));
+
+        out_levels.clear();
+        for (int i = 0; i < num_levels; i++) {
+            var x = (i % per_row) * (level_w + gap);
+            var y = (i / per_row) * (level_h + gap);
+            var level = new Level(Point.at(x, y));
+            level.pixel_bounds.set(x, y, level_w, level_h);
+            level.normalize_bounds();
+
+            var layer = new Layer.Tiles(level);
+            layer.get_attribute(Layer.TilesetAttrib.class).load(default_tileset, default_tileset_grid_size);
+            level.add_layer(layer);
+            out_levels.add(level);
+        }
+
+        // NOTE: tile contents depend on the tileset's size, which isn't known until it's loaded
+        Assets.manager.finishLoading();
+        Tilesets.update();
+
+        var random = new RandomXS128(seed);
+        for (var level : out_levels) {
+            fill(level.get_layer(Layer.Tiles.class), random);
+            world.add_level(level);
+        }
+
+        var num_rows = (num_levels + per_row - 1) / per_row;
+        return RectI.of(0, 0,
+                Math.min(num_levels, per_row) * (level_w + gap) - gap,
+                num_rows * (level_h + gap) - gap);
+    }
+
+    private static void fill(Layer.Tiles layer, RandomXS128 random) {
+        var tile_data = (Layer.TileData) layer.data;
+        var tileset = layer.get_attribute(Layer.TilesetAttrib.class).tileset;
+        var num_tiles = tileset.cols * tileset.rows;
+
+        // NOTE: put() skips change tracking, the whole layer is already dirty from when it was created
+        for (int y = 0; y < tile_data.rows; y++) {
+            for (int x = 0; x < tile_data.cols; x++) {
+                var empty = (num_tiles == 0 || random.nextFloat() < empty_fraction);
+                tile_data.put(x, y, empty ? Tile.empty : random.nextInt(num_tiles));
+            }
+        }
+    }
+
+}
@@ -1,23 +1,51 @@
 package lando.systems.led;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetDescriptor;
+import com.badlogic.gdx.assets.AssetLoaderParameters;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.AsynchronousAssetLoader;
+import com.badlogic.gdx.assets.loaders.FileHandleResolver;
+import com.badlogic.gdx.assets.loaders.resolvers.InternalFileHandleResolver;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.GlyphLayout;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
 
 public class Assets {
 
+    static final String font_filename = "dogicapixel.ttf";
+
+    // loads in the background, files are decoded on a worker thread and uploaded to the gpu in update()
+    public static AssetManager manager;
+
+    // NOTE: the built in font stands in until the real one is loaded, so don't hang on to this reference
     public static BitmapFont font;
     public static GlyphLayout layout;
     public static Texture outline;
 
+    // the background, axes and tile grids are drawn analytically, a quad each whatever the zoom or tile count
+    public static ShaderProgram backdrop_shader;
+    public static ShaderProgram grid_shader;
+
+    private static BitmapFont placeholder_font;
+
     public static void init() {
-        var fontFile = Gdx.files.internal("dogicapixel.ttf");
-        var generator = new FreeTypeFontGenerator(fontFile);
-        var parameter = new FreeTypeFontGenerator.FreeTypeFontParameter();
+        var resolver = new InternalFileHandleResolver();
+        manager = new AssetManager(resolver);
+        manager.setLoader(BitmapFont.class, ".ttf", new FontLoader(resolver));
+        manager.setErrorListener((asset, throwable) -> Gdx.app.error("failed", "Loading " + asset.fileName, throwable));
+
+        var font_params = new FontLoader.Parameters();
+        var parameter = font_params.font;
         parameter.size = 16;
         parameter.mono = true;
         parameter.color = Color.LIGHT_GRAY;
@@ -26,8 +54,10 @@ public class Assets {
         parameter.borderWidth = 1;
         parameter.shadowOffsetX = 1;
         parameter.shadowOffsetY = 1;
-        font = generator.generateFont(parameter);
-        generator.dispose();
+        manager.load(font_filename, BitmapFont.class, font_params);
+
+        placeholder_font = new BitmapFont();
+        font = placeholder_font;
 
         layout = new GlyphLayout();
 
@@ -39,11 +69,90 @@ public class Assets {
         pixmap.drawRectangle(1, 1, 7, 7);
         outline = new Texture(pixmap);
         pixmap.dispose();
+
+        backdrop_shader = load_shader("shaders/world.vert", "shaders/backdrop.frag");
+        grid_shader = load_shader("shaders/world.vert", "shaders/grid.frag");
+    }
+
+    private static ShaderProgram load_shader(String vertex_filename, String fragment_filename) {
+        var shader = new ShaderProgram(Gdx.files.internal(vertex_filename), Gdx.files.internal(fragment_filename));
+        if (!shader.isCompiled()) {
+            throw new GdxRuntimeException("Failed to compile " + fragment_filename + ": " + shader.getLog());
+        }
+        return shader;
+    }
+
+    /**
+     * Move background loading along, called once a frame
+     */
+    public static void update() {
+        manager.update();
+
+        if (font == placeholder_font && manager.isLoaded(font_filename, BitmapFont.class)) {
+            var loaded_font = manager.get(font_filename, BitmapFont.class);
+            loaded_font.getData().setScale(font.getData().scaleX, font.getData().scaleY);
+            font = loaded_font;
+        }
     }
 
     public static void dispose() {
-        font.dispose();
+        manager.dispose();
+        placeholder_font.dispose();
         outline.dispose();
+        backdrop_shader.dispose();
+        grid_shader.dispose();
+    }
+
+    /**
+     * Rasterizes FreeType fonts on the loader thread, then only creates the glyph page textures on the render thread.
+     * The stock FreetypeFontLoader does all of its work on the render thread
+     */
+    static class FontLoader extends AsynchronousAssetLoader<BitmapFont, FontLoader.Parameters> {
+
+        static class Parameters extends AssetLoaderParameters<BitmapFont> {
+            final FreeTypeFontGenerator.FreeTypeFontParameter font = new FreeTypeFontGenerator.FreeTypeFontParameter();
+        }
+
+        private PixmapPacker packer;
+        private BitmapFont.BitmapFontData data;
+
+        FontLoader(FileHandleResolver resolver) {
+            super(resolver);
+        }
+
+        @Override
+        public void loadAsync(AssetManager manager, String filename, FileHandle file, Parameters params) {
+            // NOTE: with a packer passed in the generator only draws glyphs into its pixmaps,
+            //  otherwise it would create the page textures right here, off the render thread
+            var parameter = params.font;
+            packer = new PixmapPacker(512, 512, Pixmap.Format.RGBA8888, 1, false);
+            parameter.packer = packer;
+
+            var generator = new FreeTypeFontGenerator(file);
+            data = generator.generateData(parameter);
+            generator.dispose();
+            parameter.packer = null;
+        }
+
+        @Override
+        public BitmapFont loadSync(AssetManager manager, String filename, FileHandle file, Parameters params) {
+            var parameter = params.font;
+            var regions = new Array<TextureRegion>();
+            packer.updateTextureRegions(regions, parameter.minFilter, parameter.magFilter, parameter.genMipMaps);
+
+            var font = new BitmapFont(data, regions, true);
+            font.setOwnsTexture(true);
+
+            packer = null;
+            data = null;
+            return font;
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public Array<AssetDescriptor> getDependencies(String filename, FileHandle file, Parameters params) {
+            return null;
+        }
     }
 
 }
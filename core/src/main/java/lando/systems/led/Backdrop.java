@@ -0,0 +1,37 @@
+package lando.systems.led;
+
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import lando.systems.led.input.CameraInput;
+import lando.systems.led.world.Tilesets;
+
+/**
+ * The background pattern and the world's coordinate axes, drawn by shaders/backdrop.frag in one quad over the view.
+ * The pattern stays put on screen like the background image it replaced, the axes move with the world,
+ * and both are antialiased for the current zoom
+ */
+public class Backdrop {
+
+    /**
+     * Call between batch.begin() and end(), with the batch set up for the world camera
+     *
+     * @param screen_camera the camera the ui is laid out with, the pattern is sized to it
+     */
+    public static void render(Batch batch, CameraInput camera_input, OrthographicCamera screen_camera) {
+        var camera = camera_input.get_camera();
+        var view_w = camera.viewportWidth  * camera.zoom;
+        var view_h = camera.viewportHeight * camera.zoom;
+        var left   = camera.position.x - view_w / 2f;
+        var bottom = camera.position.y - view_h / 2f;
+
+        var shader = Assets.backdrop_shader;
+        batch.setShader(shader);
+        shader.setUniformf("u_pixel_size", camera_input.get_pixel_size());
+        shader.setUniformf("u_view_origin", left, bottom);
+        shader.setUniformf("u_screen_scale", view_w / screen_camera.viewportWidth);
+        // NOTE: the shader only multiplies by the texture, the white pixel keeps it on the tileset atlas
+        batch.draw(Tilesets.white_pixel(), left, bottom, view_w, view_h);
+        batch.setShader(null);
+    }
+
+}
@@ -5,4 +5,8 @@ public class Config {
     public static int window_height = 720;
     public static int viewport_width = 320;
     public static int viewport_height = 180;
+
+    // sprites a batch holds before it has to flush, as many as a SpriteBatch can index
+    //  a screen full of tiles can be tens of thousands of sprites, the default of 1000 was a draw call every 1000 tiles
+    public static int batch_sprites = 8191;
 }
@@ -6,12 +6,11 @@ import com.badlogic.gdx.Input;
 import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.OrthographicCamera;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.input.GestureDetector;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.ScreenUtils;
 import com.github.xpenatan.imgui.ImGui;
 import com.github.xpenatan.imgui.ImGuiExt;
@@ -24,7 +23,10 @@ import lando.systems.led.input.CameraInput;
 import lando.systems.led.input.Inputs;
 import lando.systems.led.input.TilesetInput;
 import lando.systems.led.input.WorldInput;
+import lando.systems.led.utils.CachedLabel;
 import lando.systems.led.world.Layer;
+import lando.systems.led.world.Level;
+import lando.systems.led.world.Tilesets;
 import lando.systems.led.world.World;
 import space.earlygrey.shapedrawer.ShapeDrawer;
 
@@ -32,7 +34,6 @@ public class Main extends ApplicationAdapter {
 
     SpriteBatch batch;
     ShapeDrawer drawer;
-    Texture pixel;
 
     ImGuiGdxImpl imgui;
     ImGuiGdxInput imgui_input;
@@ -45,29 +46,39 @@ public class Main extends ApplicationAdapter {
     WorldInput world_input;
     TilesetInput tileset_input;
 
-    private Texture background;
     private OrthographicCamera screen_camera;
 
+    // tileset images to pick from when adding a tile layer
+    private static final int tileset_grid_size = 8;
+    private final Array<String> tileset_files = new Array<>();
+    private String[] tileset_names;
+    private final ImGuiInt tileset_choice = new ImGuiInt(0);
+
+    // sidebar labels and lists, rebuilt only when what they show changes so the sidebar doesn't allocate every frame
+    private final CachedLabel pos_label = new CachedLabel("(%d, %d)");
+    private final CachedLabel zoom_label = new CachedLabel("%.2f");
+    private final CachedLabel progress_label = new CachedLabel("%d%%");
+    private final ImGuiInt layer_choice = new ImGuiInt(-1);
+    private String[] layer_names = new String[0];
+    private Level layer_names_level;
+
     @Override
     public void create() {
         Assets.init();
+        Profiler.init();
 
-        batch = new SpriteBatch();
-        drawer = new ShapeDrawer(batch);
+        batch = new SpriteBatch(Config.batch_sprites);
+        drawer = new ShapeDrawer(batch, Tilesets.white_pixel());
 
-        background = new Texture(Gdx.files.internal("background.png"));
+        Tilesets.find_files(tileset_files);
+        tileset_names = new String[tileset_files.size];
+        for (int i = 0; i < tileset_files.size; i++) {
+            tileset_names[i] = Gdx.files.internal(tileset_files.get(i)).nameWithoutExtension();
+        }
         screen_camera = new OrthographicCamera();
         screen_camera.setToOrtho(false, Config.window_width, Config.window_height);
         screen_camera.update();
 
-        var pixmap = new Pixmap(1, 1, Pixmap.Format.RGBA8888);
-        pixmap.setColor(Color.WHITE);
-        pixmap.drawPixel(0, 0);
-        pixel = new Texture(pixmap);
-        pixmap.dispose();
-
-        drawer.setTextureRegion(new TextureRegion(pixel));
-
         ImGui.init();
         ImGuiExt.init();
         ImGui.GetIO().SetConfigFlags(ImGuiConfigFlags.DockingEnable);
@@ -85,6 +96,9 @@ public class Main extends ApplicationAdapter {
         imgui_input = new ImGuiGdxInput();
         Inputs.init(world_input, camera_input, tileset_input);
 
+        // pick up where the last session left off, including unsaved edits from the journal
+        world.load();
+
         // NOTE: apparently ImGuiGdxInput doesn't respect the input mux bubbling order?
         //  touches that are eaten by TilesetInput still trigger button presses and such in ImGuiGdxInput
         var input_mux = new InputMultiplexer(
@@ -99,12 +113,13 @@ public class Main extends ApplicationAdapter {
 
     @Override
     public void dispose() {
+        world.dispose();
         Assets.dispose();
+        Tilesets.dispose();
+        Profiler.dispose();
         ImGui.dispose();
         imgui.dispose();
         batch.dispose();
-        pixel.dispose();
-        background.dispose();
     }
 
     @Override
@@ -116,52 +131,87 @@ public class Main extends ApplicationAdapter {
         if (Gdx.input.isKeyJustPressed(Input.Keys.ESCAPE)) {
             Gdx.app.exit();
         }
+        if (Gdx.input.isKeyJustPressed(Input.Keys.F3)) {
+            Profiler.show = !Profiler.show;
+        }
 
         var dt = Gdx.graphics.getDeltaTime();
 
+        Profiler.inputs.begin();
         Inputs.update();
+        Profiler.inputs.end();
 
+        Profiler.camera_input.begin();
         camera_input.update(dt);
+        Profiler.camera_input.end();
+
+        Profiler.world_input.begin();
         world_input.update(dt);
+        Profiler.world_input.end();
+
+        Profiler.tileset_input.begin();
         tileset_input.update(dt);
+        Profiler.tileset_input.end();
+
+        Profiler.loading.begin();
+        Assets.update();
+        Tilesets.update();
+        Profiler.loading.end();
+
+        // NOTE: after inputs so this frame's tile edits are picked up before rendering
+        Profiler.world_update.begin();
+        world.update(dt);
+        Profiler.world_update.end();
+
+        // NOTE: shapes are drawn with a white texel in the tileset atlas so they don't flush the batch between tiles,
+        //  it moves if the atlas gets repacked, which can happen whenever a tileset is released
+        var white_pixel = Tilesets.white_pixel();
+        if (drawer.getRegion() != white_pixel) {
+            drawer.setTextureRegion(white_pixel);
+        }
 
+        Profiler.imgui_build.begin();
         imgui.update();
+        Profiler.imgui_build.end();
     }
 
     @Override
     public void render() {
+        Profiler.begin_frame();
         update();
 
         ScreenUtils.clear(0.2f, 0.2f, 0.2f, 1f);
         batch.setProjectionMatrix(camera.combined);
 
         // build imgui frame
+        Profiler.imgui_build.begin();
         {
             build_imgui_sidebar();
             world_input.update_gui();
+            Profiler.build_gui();
         }
         ImGui.Render();
+        Profiler.imgui_build.end();
 
-        // draw background
-        batch.setProjectionMatrix(screen_camera.combined);
+        // draw background and coordinate axes
+        Profiler.begin_pass(Profiler.background);
+        batch.setProjectionMatrix(camera.combined);
         batch.begin();
         {
-            // scale up so it's not as dense of a grid
-            var scale = 4f;
-            batch.draw(background, 0, 0,
-                    screen_camera.viewportWidth * scale,
-                    screen_camera.viewportHeight * scale);
+            Backdrop.render(batch, camera_input, screen_camera);
         }
         batch.end();
+        Profiler.end_pass(Profiler.background, batch);
 
         // draw scene
+        Profiler.begin_pass(Profiler.world_render);
         batch.setProjectionMatrix(camera.combined);
         batch.begin();
         {
             // draw a dimming overlay
             if (camera_input.panning) {
                 batch.setColor(0f, 0f, 0f, 0.2f);
-                batch.draw(pixel,
+                batch.draw(Tilesets.white_pixel(),
                         camera.position.x - camera_input.effective_viewport.x / 2f,
                         camera.position.y - camera_input.effective_viewport.y / 2f,
                         camera_input.effective_viewport.x,
@@ -169,27 +219,25 @@ public class Main extends ApplicationAdapter {
                 batch.setColor(Color.WHITE);
             }
 
-            // draw coordinate axes
-            {
-                var scale = 2000f;
-                drawer.line(-scale, 0, scale, 0, Color.FIREBRICK, 2);
-                drawer.line(0, -scale, 0, scale, Color.FOREST, 2);
-            }
-
             // draw the world
             {
                 world.render(drawer, batch);
 
                 world_input.render_selected_paint_tiles(batch);
+                world_input.render_stroke_preview(drawer);
                 world_input.render_new_level_button(drawer);
             }
         }
         batch.end();
+        Profiler.end_pass(Profiler.world_render, batch);
 
         // draw ui
+        Profiler.imgui_render.begin();
         imgui.render(ImGui.GetDrawData());
+        Profiler.imgui_render.end();
 
         // draw overlay
+        Profiler.begin_pass(Profiler.overlay);
         batch.setProjectionMatrix(screen_camera.combined);
         batch.begin();
         {
@@ -219,7 +267,23 @@ public class Main extends ApplicationAdapter {
             font.setColor(Color.WHITE);
         }
         batch.end();
+        Profiler.end_pass(Profiler.overlay, batch);
+
+        Profiler.end_frame();
+    }
+    private String[] get_layer_names(Level level) {
+        // NOTE: layers keep their names, so the list only changes when layers are added or it's a different level
+        if (level != layer_names_level || layer_names.length != level.layers.size()) {
+            layer_names_level = level;
+            layer_names = new String[level.layers.size()];
+            for (int i = 0; i < layer_names.length; i++) {
+                layer_names[i] = level.layers.get(i).name();
+            }
+            layer_choice.setValue(-1);
+        }
+        return layer_names;
     }
+
     private final Color world_name_color = new Color(1f, 1f, 0.5f, 0.66f);
     private final Color level_name_color = new Color(0.8f, 0.8f, 0.4f, 0.4f);
 
@@ -232,12 +296,16 @@ public class Main extends ApplicationAdapter {
         ImGui.SetNextWindowSizeConstraints(sidebar_w, sidebar_h, sidebar_w, sidebar_h);
         ImGui.Begin("Level Editor");
         {
-            ImGui.LabelText("pos", String.format("(%d, %d)", (int) Inputs.mouse_world.x, (int) Inputs.mouse_world.y));
-            ImGui.LabelText("zoom", String.format("%.2f", camera.zoom));
+            ImGui.LabelText("pos", pos_label.get((int) Inputs.mouse_world.x, (int) Inputs.mouse_world.y));
+            ImGui.LabelText("zoom", zoom_label.get(camera.zoom));
 
             if (ImGui.Button("Reset Camera", 100, 25)) {
                 camera_input.reset_camera();
             }
+            ImGui.SameLine();
+            if (ImGui.Button("Stats")) {
+                Profiler.show = !Profiler.show;
+            }
 
             ImGui.Separator();
 
@@ -255,12 +323,44 @@ public class Main extends ApplicationAdapter {
             ImGui.Separator();
 
             {
-                if (ImGui.Button("Save World")) {
-                    world.save();
+                var saver = world.saver;
+                if (saver.is_saving()) {
+                    var progress = (saver.levels_total() == 0) ? 0 : 100 * saver.levels_written() / saver.levels_total();
+                    ImGui.LabelText("saving", progress_label.get(progress));
+                } else if (!world.can_save()) {
+                    ImGui.LabelText("saving", "off, the world file couldn't be loaded");
+                    if (ImGui.Button("Load World")) {
+                        world.load();
+                    }
+                } else {
+                    if (ImGui.Button("Save World")) {
+                        world.save();
+                    }
+                    ImGui.SameLine();
+                    if (ImGui.Button("Load World")) {
+                        world.load();
+                    }
+                }
+            }
+
+            ImGui.Separator();
+
+            {
+                // tools, also on keys B, L, R and G
+                if (ImGui.Button((world_input.tool == WorldInput.Tool.paint) ? "[Paint]" : "Paint")) {
+                    world_input.tool = WorldInput.Tool.paint;
                 }
                 ImGui.SameLine();
-                if (ImGui.Button("Load World")) {
-                    world.load();
+                if (ImGui.Button((world_input.tool == WorldInput.Tool.line) ? "[Line]" : "Line")) {
+                    world_input.tool = WorldInput.Tool.line;
+                }
+                ImGui.SameLine();
+                if (ImGui.Button((world_input.tool == WorldInput.Tool.rect) ? "[Rect]" : "Rect")) {
+                    world_input.tool = WorldInput.Tool.rect;
+                }
+                ImGui.SameLine();
+                if (ImGui.Button((world_input.tool == WorldInput.Tool.fill) ? "[Fill]" : "Fill")) {
+                    world_input.tool = WorldInput.Tool.fill;
                 }
             }
 
@@ -268,12 +368,17 @@ public class Main extends ApplicationAdapter {
 
             {
                 if (active_level != null) {
-                    if (ImGui.Button("Add Tiles")) {
+                    if (tileset_names.length > 1) {
+                        ImGui.ListBox("tileset", tileset_choice, tileset_names, tileset_names.length);
+                    }
+                    if (ImGui.Button("Add Tiles") && tileset_files.notEmpty()) {
                         if (!active_level.has_layer(Layer.Tiles.class)) {
                             var layer = new Layer.Tiles(active_level);
                             var tileset_attrib = layer.get_attribute(Layer.TilesetAttrib.class);
-                            tileset_attrib.tileset.load("tilesets/paper-pixels8.png", 8);
+                            var choice = MathUtils.clamp(tileset_choice.getValue(), 0, tileset_files.size - 1);
+                            tileset_attrib.load(tileset_files.get(choice), tileset_grid_size);
                             active_level.add_layer(layer);
+                            world.journal.record_layer_added(active_level, layer);
                         }
                     }
                     ImGui.SameLine();
@@ -281,6 +386,7 @@ public class Main extends ApplicationAdapter {
                         if (!active_level.has_layer(Layer.Entities.class)) {
                             var layer = new Layer.Entities(active_level);
                             active_level.add_layer(layer);
+                            world.journal.record_layer_added(active_level, layer);
                         }
                     }
                     // TODO: info about layers for active level
@@ -290,12 +396,8 @@ public class Main extends ApplicationAdapter {
                     //  - metadata
 
                     if (!active_level.layers.isEmpty()) {
-                        var label = "layers";
-                        var current_item = new ImGuiInt(active_level.layers.size());
-                        var items = active_level.layers.stream()
-                                .map(Layer::name).toArray(String[]::new);
-                        var item_count = items.length;
-                        ImGui.ListBox(label, current_item, items, item_count);
+                        var items = get_layer_names(active_level);
+                        ImGui.ListBox("layers", layer_choice, items, items.length);
                     }
                 }
             }
@@ -0,0 +1,235 @@
+package lando.systems.led;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.Array;
+import com.github.xpenatan.imgui.ImGui;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Per frame timings and draw counts, shown in the Frame Stats window (F3).
+ * <p>
+ * Timers measure named sections of the frame, a section can run more than once a frame and its times add up.
+ * Every timer and counter keeps its last history_frames values, the window shows the median, 95th percentile
+ * and max of those, and dump_csv() writes them all out with one row per frame.
+ * <p>
+ * Batch render calls come from SpriteBatch.renderCalls after each pass, sprites and texture binds from GLProfiler.
+ * GL counts cover the whole frame, imgui included, batch counts only the passes wrapped in begin_pass() / end_pass().
+ */
+public class Profiler {
+
+    public static final int history_frames = 600;
+
+    // the window's text is only refreshed every so often, so formatting it doesn't show up in what it measures
+    static final int gui_refresh_frames = 15;
+
+    static final String csv_folder = "profiles";
+
+    public static class Stat {
+        public final String name;
+        final boolean is_time;
+        final long[] history = new long[history_frames];
+        long value;
+        long start;
+        String text = "";
+
+        Stat(String name, boolean is_time) {
+            this.name = name;
+            this.is_time = is_time;
+            stats.add(this);
+        }
+
+        public void begin() {
+            start = System.nanoTime();
+        }
+
+        public void end() {
+            value += System.nanoTime() - start;
+        }
+
+        public void add(long amount) {
+            value += amount;
+        }
+    }
+
+    private static final Array<Stat> stats = new Array<>();
+
+    // timers
+    public static final Stat frame          = new Stat("frame", true);
+    public static final Stat inputs         = new Stat("inputs", true);
+    public static final Stat camera_input   = new Stat("camera input", true);
+    public static final Stat world_input    = new Stat("world input", true);
+    public static final Stat tileset_input  = new Stat("tileset input", true);
+    public static final Stat loading        = new Stat("loading", true);
+    public static final Stat world_update   = new Stat("world update", true);
+    public static final Stat imgui_build    = new Stat("imgui build", true);
+    public static final Stat imgui_render   = new Stat("imgui render", true);
+    public static final Stat background     = new Stat("background", true);
+    public static final Stat world_render   = new Stat("world render", true);
+    public static final Stat overlay        = new Stat("overlay", true);
+
+    // counters
+    public static final Stat render_calls   = new Stat("render calls", false);
+    public static final Stat sprites        = new Stat("sprites", false);
+    public static final Stat texture_binds  = new Stat("texture binds", false);
+    public static final Stat gl_draw_calls  = new Stat("gl draw calls", false);
+
+    public static boolean show = false;
+
+    private static GLProfiler gl_profiler;
+    private static float pass_start_vertices;
+    private static int cursor;
+    private static int frames_recorded;
+    private static int frames_until_refresh;
+    private static final long[] sorted = new long[history_frames];
+    private static String header_text = "";
+
+    public static void init() {
+        gl_profiler = new GLProfiler(Gdx.graphics);
+        gl_profiler.enable();
+    }
+
+    public static void begin_frame() {
+        gl_profiler.reset();
+        frame.begin();
+    }
+
+    public static void end_frame() {
+        frame.end();
+        texture_binds.add(gl_profiler.getTextureBindings());
+        gl_draw_calls.add(gl_profiler.getDrawCalls());
+
+        for (var stat : stats) {
+            stat.history[cursor] = stat.value;
+            stat.value = 0;
+        }
+        cursor = (cursor + 1) % history_frames;
+        frames_recorded = Math.min(frames_recorded + 1, history_frames);
+
+        if (show && --frames_until_refresh <= 0) {
+            frames_until_refresh = gui_refresh_frames;
+            header_text = "p50 / p95 / max, last " + frames_recorded + " frames";
+            for (var stat : stats) {
+                refresh_text(stat);
+            }
+        }
+    }
+
+    /**
+     * Time a batch pass and count what it drew, call before batch.begin()
+     */
+    public static void begin_pass(Stat timer) {
+        pass_start_vertices = gl_profiler.getVertexCount().total;
+        timer.begin();
+    }
+
+    /**
+     * Call after batch.end(), while its renderCalls still count this pass
+     */
+    public static void end_pass(Stat timer, SpriteBatch batch) {
+        timer.end();
+        render_calls.add(batch.renderCalls);
+        // NOTE: the vertex count is really the index count, which is 6 for each sprite
+        sprites.add((long) (gl_profiler.getVertexCount().total - pass_start_vertices) / 6);
+    }
+
+    public static void dispose() {
+        if (gl_profiler != null) {
+            gl_profiler.disable();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Display
+
+    public static void build_gui() {
+        if (!show) return;
+
+        ImGui.SetNextWindowBgAlpha(0.8f);
+        ImGui.Begin("Frame Stats");
+        {
+            ImGui.LabelText("", header_text);
+            for (var stat : stats) {
+                ImGui.LabelText(stat.name, stat.text);
+            }
+            ImGui.Separator();
+            if (ImGui.Button("Dump CSV")) {
+                dump_csv();
+            }
+        }
+        ImGui.End();
+    }
+
+    private static void refresh_text(Stat stat) {
+        if (frames_recorded == 0) return;
+
+        var count = copy_history(stat, sorted);
+        Arrays.sort(sorted, 0, count);
+        var p50 = sorted[(count - 1) / 2];
+        var p95 = sorted[(int) ((count - 1) * 0.95f)];
+        var max = sorted[count - 1];
+        if (stat.is_time) {
+            stat.text = String.format(Locale.ROOT, "%.2f / %.2f / %.2f ms", p50 / 1e6, p95 / 1e6, max / 1e6);
+        } else {
+            stat.text = String.format(Locale.ROOT, "%d / %d / %d", p50, p95, max);
+        }
+    }
+
+    /**
+     * Copy out the recorded values, oldest first
+     *
+     * @return how many values were copied
+     */
+    private static int copy_history(Stat stat, long[] out) {
+        var oldest = (frames_recorded < history_frames) ? 0 : cursor;
+        for (int i = 0; i < frames_recorded; i++) {
+            out[i] = stat.history[(oldest + i) % history_frames];
+        }
+        return frames_recorded;
+    }
+
+    // ------------------------------------------------------------------------
+    // Export
+
+    /**
+     * Write every recorded frame out to a csv file in profiles/, times in milliseconds
+     */
+    public static void dump_csv() {
+        var csv = new StringBuilder();
+        csv.append("frame");
+        for (var stat : stats) {
+            csv.append(',').append(stat.name.replace(' ', '_'));
+            if (stat.is_time) {
+                csv.append("_ms");
+            }
+        }
+        csv.append('\n');
+
+        var columns = new long[stats.size][];
+        for (int i = 0; i < stats.size; i++) {
+            columns[i] = new long[history_frames];
+            copy_history(stats.get(i), columns[i]);
+        }
+        for (int row = 0; row < frames_recorded; row++) {
+            csv.append(row);
+            for (int i = 0; i < stats.size; i++) {
+                var value = columns[i][row];
+                csv.append(',');
+                if (stats.get(i).is_time) {
+                    csv.append(String.format(Locale.ROOT, "%.3f", value / 1e6));
+                } else {
+                    csv.append(value);
+                }
+            }
+            csv.append('\n');
+        }
+
+        var file = Gdx.files.local(csv_folder + "/frames-" + System.currentTimeMillis() + ".csv");
+        file.writeString(csv.toString(), false);
+        Gdx.app.log("profiler", "Wrote " + frames_recorded + " frames to " + file.path());
+    }
+
+}
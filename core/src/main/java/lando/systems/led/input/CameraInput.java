@@ -11,6 +11,7 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import lando.systems.led.Config;
 import lando.systems.led.utils.Point;
+import lando.systems.led.utils.RectI;
 import lando.systems.led.world.Level;
 
 public class CameraInput extends InputAdapter implements GestureDetector.GestureListener {
@@ -220,4 +221,26 @@ public class CameraInput extends InputAdapter implements GestureDetector.Gesture
         return camera;
     }
 
+    /**
+     * Get the world space region currently visible through the camera,
+     * rounded outward to whole pixels
+     */
+    public RectI get_view_bounds(RectI out) {
+        var half_w = camera.viewportWidth  * camera.zoom / 2f;
+        var half_h = camera.viewportHeight * camera.zoom / 2f;
+        var left   = MathUtils.floor(camera.position.x - half_w);
+        var bottom = MathUtils.floor(camera.position.y - half_h);
+        var right  = MathUtils.ceil(camera.position.x + half_w);
+        var top    = MathUtils.ceil(camera.position.y + half_h);
+        return out.set(left, bottom, right - left, top - bottom);
+    }
+
+    /**
+     * How many world units one pixel of the window covers at the current zoom,
+     * for shaders that draw lines a fraction of a pixel wide and need to antialias them
+     */
+    public float get_pixel_size() {
+        return camera.viewportWidth * camera.zoom / Gdx.graphics.getBackBufferWidth();
+    }
+
 }
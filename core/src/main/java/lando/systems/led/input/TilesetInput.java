@@ -14,6 +14,7 @@ import com.badlogic.gdx.utils.Align;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.IntArray;
 import lando.systems.led.Assets;
+import lando.systems.led.utils.CachedLabel;
 import lando.systems.led.utils.Point;
 import lando.systems.led.utils.RectI;
 import lando.systems.led.world.Layer;
@@ -57,6 +58,7 @@ public class TilesetInput extends InputAdapter {
     private final Rectangle scissors    = new Rectangle();
     private final Rectangle clip_bounds = new Rectangle();
     private final Array<RectI> tiles = new Array<>();
+    private final CachedLabel grid_size_label = new CachedLabel("grid size: %d");
     private int tile_scale = default_tile_scale;
     private boolean dragging;
     private boolean resizing;
@@ -94,7 +96,8 @@ public class TilesetInput extends InputAdapter {
         if (level != null) {
             var tileset_attrib = level.get_layer_attribute(Layer.Tiles.class, Layer.TilesetAttrib.class);
             if (tileset_attrib != null) {
-                if (tileset != tileset_attrib.tileset) {
+                // NOTE: also once the tileset finishes loading in the background
+                if (tileset != tileset_attrib.tileset || tiles.size != tileset.rows * tileset.cols) {
                     tileset = tileset_attrib.tileset;
                     regenerate_tiles();
                 }
@@ -235,7 +238,8 @@ public class TilesetInput extends InputAdapter {
                     font.draw(batch, layout, left, line);
                     line -= layout.height + line_spacing;
 
-                    layout.setText(font, String.format("grid size: %d", tileset.grid_size), Color.LIGHT_GRAY, width, Align.left, false);
+                    var info = tileset.is_loading() ? "loading..." : grid_size_label.get(tileset.grid_size);
+                    layout.setText(font, info, Color.LIGHT_GRAY, width, Align.left, false);
                     font.draw(batch, layout, left, line);
                     line -= layout.height + line_spacing;
                 }
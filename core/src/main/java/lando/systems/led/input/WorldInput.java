@@ -1,5 +1,6 @@
 package lando.systems.led.input;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.Input.Buttons;
 import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.InputAdapter;
@@ -8,14 +9,16 @@ import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector3;
-import com.badlogic.gdx.utils.IntArray;
 import com.github.xpenatan.imgui.ImGui;
 import com.github.xpenatan.imgui.ImGuiString;
 import lando.systems.led.Assets;
 import lando.systems.led.utils.Point;
+import lando.systems.led.world.FloodFill;
 import lando.systems.led.world.Layer;
 import lando.systems.led.world.Level;
 import lando.systems.led.world.Tile;
+import lando.systems.led.world.TileBrush;
+import lando.systems.led.world.TilePattern;
 import lando.systems.led.world.World;
 import space.earlygrey.shapedrawer.ShapeDrawer;
 
@@ -23,6 +26,8 @@ import static lando.systems.led.world.Level.DragHandle.Dir.*;
 
 public class WorldInput extends InputAdapter {
 
+    public enum Tool { paint, line, rect, fill }
+
     final OrthographicCamera camera;
     final MouseButtons mouse_buttons;
     final World world;
@@ -34,12 +39,25 @@ public class WorldInput extends InputAdapter {
     public Point new_level_pos;
     public ImGuiString imgui_level_name_string;
     public ImGuiString imgui_world_name_string;
+    public Tool tool;
 
     private Level.DragHandle active_handle;
     private Point move_center;
     private boolean painting;
     private boolean erasing;
 
+    private final TilePattern pattern;
+    private final TilePattern eraser;
+    private final FloodFill flood_fill;
+    private final TileBrush brush;
+
+    // grid cells of the current stroke: where it started, where it was last frame, and under the cursor now
+    private final Point stroke_start;
+    private final Point stroke_last;
+    private final Point stroke_cell;
+    // the tool the current stroke started with, switching tools mid drag only applies to the next stroke
+    private Tool stroke_tool;
+
     static class MouseButtons {
         boolean left_mouse_down;
         boolean middle_mouse_down;
@@ -58,6 +76,15 @@ public class WorldInput extends InputAdapter {
         this.show_new_level_button = false;
         this.painting = false;
         this.erasing = false;
+        this.tool = Tool.paint;
+        this.stroke_tool = Tool.paint;
+        this.pattern = new TilePattern();
+        this.eraser = new TilePattern().set_single(Tile.empty);
+        this.flood_fill = new FloodFill();
+        this.brush = new TileBrush();
+        this.stroke_start = Point.zero();
+        this.stroke_last = Point.zero();
+        this.stroke_cell = Point.zero();
     }
 
     public void update(float dt) {
@@ -104,22 +131,17 @@ public class WorldInput extends InputAdapter {
                 }
             }
 
-            // check for painting
-            var selected_tiles = Inputs.tileset_input.selected_tiles;
-            if (painting && mouse_buttons.left_mouse_down && !selected_tiles.isEmpty()) {
-                var tile = active_level.point_in_tile(Inputs.mouse_world);
-                if (tile != null) {
-                    var tile_data = (Layer.TileData) active_level.get_layer(Layer.Tiles.class).data;
-                    splat_tiles_at(tile, tile_data, selected_tiles);
-                }
-            }
-
-            // check for erasing
-            if (erasing && mouse_buttons.right_mouse_down && selected_tiles.isEmpty()) {
-                var tile = active_level.point_in_tile(Inputs.mouse_world);
-                if (tile != null) {
-                    tile.tileset_index = -1;
+            // continue painting or erasing strokes, filling in the cells between last frame and this one
+            // NOTE: line and rect strokes only write when they're released, see touchUp()
+            if (brush.is_active() && (painting || erasing)) {
+                var tile_layer = active_level.get_layer(Layer.Tiles.class);
+                cell_at(active_level, tile_layer, Inputs.mouse_world.x, Inputs.mouse_world.y, stroke_cell);
+                if (erasing || stroke_tool == Tool.paint) {
+                    var stroke_pattern = erasing ? eraser : pattern;
+                    brush.line(stroke_last.x, stroke_last.y, stroke_cell.x, stroke_cell.y, stroke_pattern);
+                    brush.flush();
                 }
+                stroke_last.set(stroke_cell);
             }
         }
     }
@@ -141,6 +163,7 @@ public class WorldInput extends InputAdapter {
                     // create a new level with default size at current location
                     var level = new Level(new_level_pos);
                     world.add_level(level);
+                    world.journal.record_level_added(level);
 
                     hide_new_level_button();
                 }
@@ -182,7 +205,10 @@ public class WorldInput extends InputAdapter {
                 //   also done in update() to handle drag painting, but the flag is set here
                 var tile = active_level.point_in_tile(touch_world);
                 if (tile != null) {
-                    erasing = true;
+                    if (Inputs.tileset_input.selected_tiles.isEmpty()) {
+                        erasing = true;
+                        begin_stroke(active_level, tile);
+                    }
                     return true;
                 }
             }
@@ -212,7 +238,15 @@ public class WorldInput extends InputAdapter {
                     //   also done in update() to handle drag painting but the flag is set here
                     var tile = active_level.point_in_tile(touch_world);
                     if (tile != null) {
-                        painting = true;
+                        if (tool == Tool.fill) {
+                            fill_at(tile, active_level);
+                            return true;
+                        }
+                        if (!Inputs.tileset_input.selected_tiles.isEmpty()) {
+                            painting = true;
+                            pattern.set(Inputs.tileset_input.selected_tiles, Inputs.tileset_input.tileset);
+                            begin_stroke(active_level, tile);
+                        }
                         return true;
                     }
 
@@ -258,6 +292,9 @@ public class WorldInput extends InputAdapter {
         }
 
         if (button == Buttons.LEFT) {
+            if (painting) {
+                end_stroke();
+            }
             painting = false;
 
             // let go of drag handle
@@ -267,16 +304,7 @@ public class WorldInput extends InputAdapter {
                 var active_level = world.get_active_level();
                 if (active_level != null) {
                     // reconcile a same-axis edge crossover
-                    // ie. maintain positive width, height
-                    var bounds = active_level.pixel_bounds;
-                    if (bounds.w < 0) {
-                        bounds.w = Math.abs(bounds.w);
-                        bounds.x -= bounds.w;
-                    }
-                    if (bounds.h < 0) {
-                        bounds.h = Math.abs(bounds.h);
-                        bounds.y -= bounds.h;
-                    }
+                    active_level.normalize_bounds();
 
                     // if this level has a tile layer, regenerate it based on the new size
                     // TODO: at the moment this just blows away existing tiles,
@@ -291,6 +319,9 @@ public class WorldInput extends InputAdapter {
             }
         }
         else if (button == Buttons.RIGHT) {
+            if (erasing) {
+                end_stroke();
+            }
             erasing = false;
         }
 
@@ -299,6 +330,45 @@ public class WorldInput extends InputAdapter {
 
     @Override
     public boolean keyDown(int keycode) {
+        var ctrl = Gdx.input.isKeyPressed(Keys.CONTROL_LEFT) || Gdx.input.isKeyPressed(Keys.CONTROL_RIGHT);
+        var shift = Gdx.input.isKeyPressed(Keys.SHIFT_LEFT) || Gdx.input.isKeyPressed(Keys.SHIFT_RIGHT);
+        // NOTE: no undo or redo in the middle of a stroke, ending the history's stroke early
+        //  would turn the rest of the drag into an undo step per cell
+        if (ctrl && brush.is_active()) {
+            if (keycode == Keys.Z || keycode == Keys.Y) {
+                return true;
+            }
+        }
+        if (ctrl) {
+            if (keycode == Keys.Z && !shift) {
+                world.history.undo();
+                return true;
+            }
+            if (keycode == Keys.Y || (keycode == Keys.Z && shift)) {
+                world.history.redo();
+                return true;
+            }
+        }
+
+        if (!ctrl) {
+            if (keycode == Keys.B) {
+                tool = Tool.paint;
+                return true;
+            }
+            if (keycode == Keys.L) {
+                tool = Tool.line;
+                return true;
+            }
+            if (keycode == Keys.R) {
+                tool = Tool.rect;
+                return true;
+            }
+            if (keycode == Keys.G) {
+                tool = Tool.fill;
+                return true;
+            }
+        }
+
         if (keycode == Keys.DEL
          || keycode == Keys.FORWARD_DEL) {
             // TODO: prompt before deleting
@@ -314,6 +384,38 @@ public class WorldInput extends InputAdapter {
         return false;
     }
 
+    /**
+     * Outline the cells a line or rect stroke will cover when it's released
+     */
+    public void render_stroke_preview(ShapeDrawer drawer) {
+        if (!painting || (stroke_tool != Tool.line && stroke_tool != Tool.rect)) return;
+
+        var active_level = world.get_active_level();
+        if (active_level == null) return;
+        var tile_layer = active_level.get_layer(Layer.Tiles.class);
+        if (tile_layer == null) return;
+
+        var grid_size = tile_layer.get_attribute(Layer.GridAttrib.class).size;
+        var level_x = active_level.pixel_bounds.x;
+        var level_y = active_level.pixel_bounds.y;
+        var half = grid_size / 2f;
+        if (stroke_tool == Tool.line) {
+            drawer.line(
+                    level_x + stroke_start.x * grid_size + half, level_y + stroke_start.y * grid_size + half,
+                    level_x + stroke_cell.x  * grid_size + half, level_y + stroke_cell.y  * grid_size + half,
+                    Color.LIME, 2);
+        } else {
+            var left   = Math.min(stroke_start.x, stroke_cell.x);
+            var bottom = Math.min(stroke_start.y, stroke_cell.y);
+            var cols   = Math.abs(stroke_cell.x - stroke_start.x) + 1;
+            var rows   = Math.abs(stroke_cell.y - stroke_start.y) + 1;
+            drawer.rectangle(
+                    level_x + left * grid_size, level_y + bottom * grid_size,
+                    cols * grid_size, rows * grid_size,
+                    Color.LIME, 2);
+        }
+    }
+
     public void render_new_level_button(ShapeDrawer drawer) {
         if (show_new_level_button) {
             var radius = 3;
@@ -365,34 +467,49 @@ public class WorldInput extends InputAdapter {
         }
     }
 
-    private void splat_tiles_at(Tile start_tile, Layer.TileData tile_data, IntArray selected_tiles) {
-        var tileset = Inputs.tileset_input.tileset;
+    private void fill_at(Tile start_tile, Level level) {
+        var selected_tiles = Inputs.tileset_input.selected_tiles;
+        var tile_layer = (Layer.Tiles) level.get_layer(Layer.Tiles.class);
+        if (tile_layer == null || selected_tiles.isEmpty()) return;
 
-        // NOTE: tileset origin is top left, tile layer origin is bottom left
-        //  so have to flip y both here and in for each selected tile
-        int first_tileset_selection_grid_x = selected_tiles.first() % tileset.cols;
-        int first_tileset_selection_grid_y = selected_tiles.first() / tileset.cols;
-        first_tileset_selection_grid_y = tileset.rows - first_tileset_selection_grid_y;
+        pattern.set(selected_tiles, Inputs.tileset_input.tileset);
+        flood_fill.fill(level, tile_layer, start_tile.grid.x, start_tile.grid.y, pattern);
+    }
 
-        var tileset_grid = Point.pool.obtain();
-        {
-            for (int i = 0; i < selected_tiles.size; i++) {
-                int selected_tileset_index = selected_tiles.get(i);
-                tileset_grid.x = selected_tileset_index % tileset.cols;
-                tileset_grid.y = selected_tileset_index / tileset.cols;
-                tileset_grid.y = tileset.rows - tileset_grid.y;
-
-                int tile_x = start_tile.grid.x + (tileset_grid.x - first_tileset_selection_grid_x);
-                int tile_y = start_tile.grid.y + (tileset_grid.y - first_tileset_selection_grid_y);
-
-                if (tile_x >= 0 && tile_x < tile_data.cols
-                 && tile_y >= 0 && tile_y < tile_data.rows) {
-                    var tile = tile_data.tiles[tile_y][tile_x];
-                    tile.tileset_index = selected_tileset_index;
-                }
+    private void begin_stroke(Level level, Tile start_tile) {
+        stroke_start.set(start_tile.grid.x, start_tile.grid.y);
+        stroke_last.set(stroke_start);
+        stroke_cell.set(stroke_start);
+        stroke_tool = tool;
+        brush.begin(level, level.get_layer(Layer.Tiles.class));
+
+        // a click without dragging still paints
+        if (erasing || stroke_tool == Tool.paint) {
+            brush.stamp(stroke_start.x, stroke_start.y, erasing ? eraser : pattern);
+            brush.flush();
+        }
+    }
+
+    private void end_stroke() {
+        if (!brush.is_active()) return;
+
+        if (painting) {
+            switch (stroke_tool) {
+                case line -> brush.line(stroke_start.x, stroke_start.y, stroke_cell.x, stroke_cell.y, pattern);
+                case rect -> brush.rect(stroke_start.x, stroke_start.y, stroke_cell.x, stroke_cell.y, pattern);
             }
         }
-        Point.pool.free(tileset_grid);
+        brush.end();
+    }
+
+    /**
+     * The grid cell of the level's tile layer under a world position, which can be outside the layer
+     */
+    private void cell_at(Level level, Layer tile_layer, float world_x, float world_y, Point out) {
+        var grid_size = tile_layer.get_attribute(Layer.GridAttrib.class).size;
+        out.set(
+                MathUtils.floor((world_x - level.pixel_bounds.x) / grid_size),
+                MathUtils.floor((world_y - level.pixel_bounds.y) / grid_size));
     }
 
 }
@@ -0,0 +1,77 @@
+package lando.systems.led.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for compact binary encoding into ByteBuffers:
+ * variable length ints (LEB128), zigzag encoding for signed values, and length prefixed strings.
+ */
+public class Bytes {
+
+    // the most bytes a single varint can take
+    public static final int max_varint_size = 5;
+
+    /**
+     * Return a buffer with room for at least `needed` more bytes,
+     * either the same one or a bigger copy of it with the same position
+     */
+    public static ByteBuffer ensure(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        var capacity = Math.max(buffer.capacity() * 2, buffer.position() + needed);
+        var bigger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+
+    public static void put_varint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    public static int get_varint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && shift < 35);
+        return value;
+    }
+
+    public static void put_zigzag(ByteBuffer buffer, int value) {
+        put_varint(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    public static int get_zigzag(ByteBuffer buffer) {
+        var value = get_varint(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public static int string_size(String value) {
+        // NOTE: worst case utf-8 size, good enough for ensure()
+        return max_varint_size + 3 * value.length();
+    }
+
+    public static void put_string(ByteBuffer buffer, String value) {
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        put_varint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    public static String get_string(ByteBuffer buffer) {
+        var length = get_varint(buffer);
+        var bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
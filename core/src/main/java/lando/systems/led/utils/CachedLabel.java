@@ -0,0 +1,48 @@
+package lando.systems.led.utils;
+
+import java.util.Locale;
+
+/**
+ * A formatted label that's only rebuilt when the values in it change,
+ * so it can be drawn every frame without allocating a new string each time.
+ * Floats are compared at 2 decimal places, which is all the labels here show
+ */
+public class CachedLabel {
+
+    private final String format;
+    private long last_a;
+    private long last_b;
+    private String text;
+
+    public CachedLabel(String format) {
+        this.format = format;
+        this.text = null;
+    }
+
+    public String get(int value) {
+        if (text == null || value != last_a) {
+            last_a = value;
+            text = String.format(Locale.ROOT, format, value);
+        }
+        return text;
+    }
+
+    public String get(int a, int b) {
+        if (text == null || a != last_a || b != last_b) {
+            last_a = a;
+            last_b = b;
+            text = String.format(Locale.ROOT, format, a, b);
+        }
+        return text;
+    }
+
+    public String get(float value) {
+        var hundredths = Math.round(value * 100.0);
+        if (text == null || hundredths != last_a) {
+            last_a = hundredths;
+            text = String.format(Locale.ROOT, format, value);
+        }
+        return text;
+    }
+
+}
@@ -0,0 +1,102 @@
+package lando.systems.led.utils;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Collects changed cells as a small set of rectangles in grid coordinates.
+ * New cells are merged into any rectangle they touch, and once there are
+ * too many separate rectangles they get collapsed into their bounding box,
+ * so the cost of tracking stays constant no matter how many cells change.
+ */
+public class DirtyRects {
+
+    public static final int max_rects = 16;
+
+    public final Array<RectI> rects = new Array<>(false, max_rects);
+
+    public boolean is_empty() {
+        return rects.isEmpty();
+    }
+
+    public void add(int x, int y) {
+        add(x, y, 1, 1);
+    }
+
+    public void add(int x, int y, int w, int h) {
+        if (w <= 0 || h <= 0) return;
+
+        // grow the first rect that touches the new region, if there is one
+        for (int i = 0; i < rects.size; i++) {
+            var rect = rects.get(i);
+            if (touches(rect, x, y, w, h)) {
+                union(rect, x, y, w, h);
+                merge_touching(rect);
+                return;
+            }
+        }
+
+        if (rects.size < max_rects) {
+            rects.add(RectI.pool.obtain().set(x, y, w, h));
+        } else {
+            // too many separate regions, collapse everything into one
+            var bounds = rects.first();
+            union(bounds, x, y, w, h);
+            for (int i = rects.size - 1; i >= 1; i--) {
+                var rect = rects.removeIndex(i);
+                union(bounds, rect.x, rect.y, rect.w, rect.h);
+                RectI.pool.free(rect);
+            }
+        }
+    }
+
+    public RectI get_bounds(RectI out) {
+        if (rects.isEmpty()) {
+            return out.set(0, 0, 0, 0);
+        }
+        out.set(rects.first());
+        for (int i = 1; i < rects.size; i++) {
+            var rect = rects.get(i);
+            union(out, rect.x, rect.y, rect.w, rect.h);
+        }
+        return out;
+    }
+
+    public void clear() {
+        RectI.pool.freeAll(rects);
+        rects.clear();
+    }
+
+    private void merge_touching(RectI grown) {
+        // a rect that grew can now touch others, keep folding them in until nothing changes
+        var merged = true;
+        while (merged) {
+            merged = false;
+            for (int i = rects.size - 1; i >= 0; i--) {
+                var rect = rects.get(i);
+                if (rect != grown && touches(grown, rect.x, rect.y, rect.w, rect.h)) {
+                    union(grown, rect.x, rect.y, rect.w, rect.h);
+                    rects.removeIndex(i);
+                    RectI.pool.free(rect);
+                    merged = true;
+                }
+            }
+        }
+    }
+
+    // NOTE: inclusive of the edges, so adjacent regions are merged too
+    private static boolean touches(RectI rect, int x, int y, int w, int h) {
+        return rect.left()   <= x + w
+            && rect.bottom() <= y + h
+            && rect.right()  >= x
+            && rect.top()    >= y;
+    }
+
+    private static void union(RectI rect, int x, int y, int w, int h) {
+        var left   = Math.min(rect.left(),   x);
+        var bottom = Math.min(rect.bottom(), y);
+        var right  = Math.max(rect.right(),  x + w);
+        var top    = Math.max(rect.top(),    y + h);
+        rect.set(left, bottom, right - left, top - bottom);
+    }
+
+}
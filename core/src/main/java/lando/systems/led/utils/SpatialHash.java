@@ -0,0 +1,190 @@
+package lando.systems.led.utils;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.LongMap;
+
+/**
+ * A uniform grid over world space that buckets integer ids by the cells their bounds overlap,
+ * so point and area queries only look at the few ids near them instead of every one.
+ * Bounds with a negative width or height (mid-drag) are treated as their normalized rectangle.
+ */
+public class SpatialHash {
+
+    public final int cell_size;
+
+    private final LongMap<IntArray> cells = new LongMap<>();
+    // buckets from cells that emptied out, reused so moving things around doesn't allocate new ones
+    private final Array<IntArray> free_buckets = new Array<>(false, 16);
+    private final IntMap<RectI> bounds = new IntMap<>();
+    private final RectI normalized = RectI.zero();
+
+    public SpatialHash(int cell_size) {
+        this.cell_size = cell_size;
+    }
+
+    public int size() {
+        return bounds.size;
+    }
+
+    public boolean contains(int id) {
+        return bounds.containsKey(id);
+    }
+
+    public void insert(int id, RectI rect) {
+        if (bounds.containsKey(id)) {
+            update(id, rect);
+            return;
+        }
+        var stored = RectI.pool.obtain();
+        normalize(rect, stored);
+        bounds.put(id, stored);
+        add_to_cells(id, stored);
+    }
+
+    public void update(int id, RectI rect) {
+        var stored = bounds.get(id);
+        if (stored == null) {
+            insert(id, rect);
+            return;
+        }
+
+        // only touch the buckets if the covered cells changed
+        normalize(rect, normalized);
+        var same_cells = cell(stored.left())   == cell(normalized.left())
+                      && cell(stored.right())  == cell(normalized.right())
+                      && cell(stored.bottom()) == cell(normalized.bottom())
+                      && cell(stored.top())    == cell(normalized.top());
+        if (!same_cells) {
+            remove_from_cells(id, stored);
+            add_to_cells(id, normalized);
+        }
+        stored.set(normalized);
+    }
+
+    public void remove(int id) {
+        var stored = bounds.remove(id);
+        if (stored != null) {
+            remove_from_cells(id, stored);
+            RectI.pool.free(stored);
+        }
+    }
+
+    public void clear() {
+        for (var rect : bounds.values()) {
+            RectI.pool.free(rect);
+        }
+        bounds.clear();
+        cells.clear();
+    }
+
+    /**
+     * Add the ids whose bounds contain the point to out, in no particular order
+     */
+    public IntArray query(int x, int y, IntArray out) {
+        out.clear();
+        var ids = cells.get(key(cell(x), cell(y)));
+        if (ids == null) return out;
+
+        for (int i = 0; i < ids.size; i++) {
+            var id = ids.get(i);
+            if (bounds.get(id).contains(x, y)) {
+                out.add(id);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Add the ids whose bounds overlap the area to out, in no particular order
+     */
+    public IntArray query(RectI area, IntArray out) {
+        out.clear();
+        normalize(area, normalized);
+        var area_left   = normalized.left();
+        var area_right  = normalized.right();
+        var area_bottom = normalized.bottom();
+        var area_top    = normalized.top();
+
+        // NOTE: an area covering more cells than there are ids, like the view when zoomed far out,
+        //  is quicker to check id by id than cell by cell
+        var num_cells = (long) (cell(area_right) - cell(area_left) + 1) * (cell(area_top) - cell(area_bottom) + 1);
+        if (num_cells > bounds.size) {
+            for (var entry : bounds) {
+                if (overlaps(entry.value, normalized)) {
+                    out.add(entry.key);
+                }
+            }
+            return out;
+        }
+
+        for (int cy = cell(area_bottom); cy <= cell(area_top); cy++) {
+            for (int cx = cell(area_left); cx <= cell(area_right); cx++) {
+                var ids = cells.get(key(cx, cy));
+                if (ids == null) continue;
+
+                for (int i = 0; i < ids.size; i++) {
+                    var id = ids.get(i);
+                    var rect = bounds.get(id);
+                    if (!overlaps(rect, normalized)) continue;
+
+                    // NOTE: ids are in every cell their bounds cover, only take each one from the first of those in the area
+                    if (cx == cell(Math.max(rect.left(), area_left)) && cy == cell(Math.max(rect.bottom(), area_bottom))) {
+                        out.add(id);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    // NOTE: inclusive of the edges so zero sized bounds still get found
+    private static boolean overlaps(RectI rect, RectI area) {
+        return rect.left()   <= area.right() && rect.right() >= area.left()
+            && rect.bottom() <= area.top()   && rect.top()   >= area.bottom();
+    }
+
+    private void add_to_cells(int id, RectI rect) {
+        for (int cy = cell(rect.bottom()); cy <= cell(rect.top()); cy++) {
+            for (int cx = cell(rect.left()); cx <= cell(rect.right()); cx++) {
+                var key = key(cx, cy);
+                var ids = cells.get(key);
+                if (ids == null) {
+                    ids = free_buckets.isEmpty() ? new IntArray(false, 4) : free_buckets.pop();
+                    cells.put(key, ids);
+                }
+                ids.add(id);
+            }
+        }
+    }
+
+    private void remove_from_cells(int id, RectI rect) {
+        for (int cy = cell(rect.bottom()); cy <= cell(rect.top()); cy++) {
+            for (int cx = cell(rect.left()); cx <= cell(rect.right()); cx++) {
+                var key = key(cx, cy);
+                var ids = cells.get(key);
+                if (ids != null && ids.removeValue(id) && ids.isEmpty()) {
+                    // NOTE: drop emptied cells, otherwise every cell anything ever passed through stays in the map
+                    cells.remove(key);
+                    free_buckets.add(ids);
+                }
+            }
+        }
+    }
+
+    private int cell(int world_pos) {
+        return Math.floorDiv(world_pos, cell_size);
+    }
+
+    private static long key(int cell_x, int cell_y) {
+        return ((long) cell_x << 32) | (cell_y & 0xffffffffL);
+    }
+
+    private static void normalize(RectI rect, RectI out) {
+        var x = (rect.w < 0) ? rect.x + rect.w : rect.x;
+        var y = (rect.h < 0) ? rect.y + rect.h : rect.y;
+        out.set(x, y, Math.abs(rect.w), Math.abs(rect.h));
+    }
+
+}
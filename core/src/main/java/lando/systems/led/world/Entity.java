@@ -1,20 +1,52 @@
 package lando.systems.led.world;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import lando.systems.led.utils.Point;
 import lando.systems.led.utils.RectI;
 import space.earlygrey.shapedrawer.ShapeDrawer;
 
+/**
+ * A lightweight view of a single row in an {@link EntityStore},
+ * the entity itself lives in the store's columns.
+ * Changes to an entity go through {@link Layer.EntityData}
+ */
 public class Entity {
 
-    public final RectI bounds = RectI.zero();
-    public final Point origin = Point.zero();
+    private EntityStore store;
+    private int row;
 
-    public void render(ShapeDrawer drawer, SpriteBatch batch) {
-        drawer.filledRectangle(bounds.x, bounds.y, bounds.w, bounds.h, Color.TEAL);
-        drawer.rectangle(bounds.x, bounds.y, bounds.w, bounds.h, Color.SKY);
-        drawer.filledCircle(bounds.x + origin.x, bounds.y + origin.y, 3, Color.ORANGE);
+    public Entity set(EntityStore store, int row) {
+        this.store = store;
+        this.row = row;
+        return this;
+    }
+
+    // unique within its layer, set by EntityStore.add()
+    public int id() {
+        return store.id[row];
+    }
+
+    public EntityDef def() {
+        return store.def(row);
+    }
+
+    public RectI get_bounds(RectI out) {
+        return out.set(store.x[row], store.y[row], store.w[row], store.h[row]);
+    }
+
+    public Point get_origin(Point out) {
+        return out.set(store.origin_x[row], store.origin_y[row]);
+    }
+
+    public void render(ShapeDrawer drawer, Batch batch) {
+        var x = store.x[row];
+        var y = store.y[row];
+        var w = store.w[row];
+        var h = store.h[row];
+        drawer.filledRectangle(x, y, w, h, Color.TEAL);
+        drawer.rectangle(x, y, w, h, Color.SKY);
+        drawer.filledCircle(x + store.origin_x[row], y + store.origin_y[row], 3, Color.ORANGE);
     }
 
 }
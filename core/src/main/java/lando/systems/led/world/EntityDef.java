@@ -0,0 +1,45 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.utils.Array;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * A kind of entity and the typed fields each entity of that kind carries,
+ * see {@link EntityStore} for where the values live.
+ * Add fields before the def is defined in a store, they're fixed after that
+ */
+public class EntityDef {
+
+    public enum FieldType { int32, float32, text }
+
+    @RequiredArgsConstructor
+    public static class Field {
+        public final String name;
+        public final FieldType type;
+    }
+
+    public final String name;
+    public final Array<Field> fields = new Array<>();
+
+    public EntityDef(String name) {
+        this.name = name;
+    }
+
+    public EntityDef field(String name, FieldType type) {
+        fields.add(new Field(name, type));
+        return this;
+    }
+
+    /**
+     * @return the index of the named field, or -1 if this def doesn't have one
+     */
+    public int field_index(String name) {
+        for (int i = 0; i < fields.size; i++) {
+            if (fields.get(i).name.equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,300 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Entities stored as columns of primitives rather than an object each, one row per entity.
+ * <p>
+ * Rows are kept in the order entities were added, which is the order they're drawn in,
+ * and since ids only go up that also keeps the id column sorted, so finding an entity's row is a binary search.
+ * Removing an entity shifts the rows after it down, so hold on to ids rather than rows.
+ * <p>
+ * Each {@link EntityDef} gets a table with one column per field, holding values only for the entities of that def.
+ * A row's slot says where its values are in its def's table.
+ * <p>
+ * The columns are public for bulk iteration over rows 0 until size, but they're read only out here,
+ * changes go through {@link Layer.EntityData} so its spatial index stays in step
+ */
+public class EntityStore {
+
+    public static final int default_type = 0;
+
+    private static final int initial_capacity = 16;
+
+    public interface Filter {
+        boolean test(EntityStore store, int row);
+    }
+
+    public final Array<EntityDef> defs = new Array<>();
+    private final Array<Table> tables = new Array<>();
+
+    public int size;
+    public int[] id = new int[0];
+    public int[] type = new int[0];
+    public int[] x = new int[0];
+    public int[] y = new int[0];
+    public int[] w = new int[0];
+    public int[] h = new int[0];
+    public int[] origin_x = new int[0];
+    public int[] origin_y = new int[0];
+    private int[] slot = new int[0];
+
+    private int next_id;
+
+    public EntityStore() {
+        define(new EntityDef("Entity"));
+    }
+
+    /**
+     * Add a def, or find the one with the same name
+     *
+     * @return its type, the index in defs
+     */
+    public int define(EntityDef def) {
+        for (int i = 0; i < defs.size; i++) {
+            if (defs.get(i).name.equals(def.name)) {
+                return i;
+            }
+        }
+        defs.add(def);
+        tables.add(new Table(def));
+        return defs.size - 1;
+    }
+
+    /**
+     * @return the row of the entity with this id, or -1 if there isn't one
+     */
+    public int row(int entity_id) {
+        var row = Arrays.binarySearch(id, 0, size, entity_id);
+        return (row >= 0) ? row : -1;
+    }
+
+    /**
+     * Add a row to the end, its fields start out zero or empty
+     *
+     * @return the new entity's id
+     */
+    public int add(int type, int x, int y, int w, int h, int origin_x, int origin_y) {
+        if (size == id.length) {
+            grow(Math.max(initial_capacity, (int) (size * 1.75f)));
+        }
+        var row = size++;
+        this.id[row] = next_id++;
+        this.type[row] = type;
+        this.slot[row] = tables.get(type).add(this.id[row]);
+        set_bounds(row, x, y, w, h);
+        this.origin_x[row] = origin_x;
+        this.origin_y[row] = origin_y;
+        return this.id[row];
+    }
+
+    public void remove(int row) {
+        var moved_id = tables.get(type[row]).remove(slot[row]);
+        if (moved_id != -1) {
+            slot[row(moved_id)] = slot[row];
+        }
+
+        var count = size - row - 1;
+        System.arraycopy(id,       row + 1, id,       row, count);
+        System.arraycopy(type,     row + 1, type,     row, count);
+        System.arraycopy(x,        row + 1, x,        row, count);
+        System.arraycopy(y,        row + 1, y,        row, count);
+        System.arraycopy(w,        row + 1, w,        row, count);
+        System.arraycopy(h,        row + 1, h,        row, count);
+        System.arraycopy(origin_x, row + 1, origin_x, row, count);
+        System.arraycopy(origin_y, row + 1, origin_y, row, count);
+        System.arraycopy(slot,     row + 1, slot,     row, count);
+        size--;
+    }
+
+    public void clear() {
+        size = 0;
+        for (var table : tables) {
+            table.size = 0;
+        }
+    }
+
+    public void set_bounds(int row, int x, int y, int w, int h) {
+        this.x[row] = x;
+        this.y[row] = y;
+        this.w[row] = w;
+        this.h[row] = h;
+    }
+
+    public EntityDef def(int row) {
+        return defs.get(type[row]);
+    }
+
+    // field values, field is the index in the row's def, see EntityDef.field_index()
+
+    public int get_int(int row, int field) {
+        return ((int[]) tables.get(type[row]).columns[field])[slot[row]];
+    }
+
+    public void set_int(int row, int field, int value) {
+        ((int[]) tables.get(type[row]).columns[field])[slot[row]] = value;
+    }
+
+    public float get_float(int row, int field) {
+        return ((float[]) tables.get(type[row]).columns[field])[slot[row]];
+    }
+
+    public void set_float(int row, int field, float value) {
+        ((float[]) tables.get(type[row]).columns[field])[slot[row]] = value;
+    }
+
+    public String get_text(int row, int field) {
+        return ((String[]) tables.get(type[row]).columns[field])[slot[row]];
+    }
+
+    public void set_text(int row, int field, String value) {
+        ((String[]) tables.get(type[row]).columns[field])[slot[row]] = (value != null) ? value : "";
+    }
+
+    /**
+     * Add the ids of the entities of a type to out, in the order they're drawn
+     */
+    public IntArray of_type(int type, IntArray out) {
+        for (int row = 0; row < size; row++) {
+            if (this.type[row] == type) {
+                out.add(id[row]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Add the ids of the entities that pass the filter to out, in the order they're drawn
+     */
+    public IntArray query(Filter filter, IntArray out) {
+        for (int row = 0; row < size; row++) {
+            if (filter.test(this, row)) {
+                out.add(id[row]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * A copy of the rows and field values, for handing off to another thread.
+     * Defs are shared since they're fixed once defined
+     */
+    public EntityStore copy() {
+        return new EntityStore(this);
+    }
+
+    // ------------------------------------------------------------------------
+
+    private EntityStore(EntityStore other) {
+        defs.addAll(other.defs);
+        for (var table : other.tables) {
+            tables.add(table.copy());
+        }
+        size = other.size;
+        next_id = other.next_id;
+        id       = Arrays.copyOf(other.id, size);
+        type     = Arrays.copyOf(other.type, size);
+        x        = Arrays.copyOf(other.x, size);
+        y        = Arrays.copyOf(other.y, size);
+        w        = Arrays.copyOf(other.w, size);
+        h        = Arrays.copyOf(other.h, size);
+        origin_x = Arrays.copyOf(other.origin_x, size);
+        origin_y = Arrays.copyOf(other.origin_y, size);
+        slot     = Arrays.copyOf(other.slot, size);
+    }
+
+    private void grow(int capacity) {
+        id       = Arrays.copyOf(id, capacity);
+        type     = Arrays.copyOf(type, capacity);
+        x        = Arrays.copyOf(x, capacity);
+        y        = Arrays.copyOf(y, capacity);
+        w        = Arrays.copyOf(w, capacity);
+        h        = Arrays.copyOf(h, capacity);
+        origin_x = Arrays.copyOf(origin_x, capacity);
+        origin_y = Arrays.copyOf(origin_y, capacity);
+        slot     = Arrays.copyOf(slot, capacity);
+    }
+
+    /**
+     * The field values of one def's entities, packed with no gaps.
+     * Removing swaps the last slot into the hole, owners says which entity each slot belongs to
+     */
+    private static class Table {
+        final EntityDef def;
+        int size;
+        int[] owners;
+        // int[], float[] or String[], one per field of the def
+        final Object[] columns;
+
+        Table(EntityDef def) {
+            this.def = def;
+            this.owners = new int[0];
+            this.columns = new Object[def.fields.size];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = switch (def.fields.get(i).type) {
+                    case int32   -> new int[0];
+                    case float32 -> new float[0];
+                    case text    -> new String[0];
+                };
+            }
+        }
+
+        /**
+         * @return the slot for the owner's values, cleared to zero or empty
+         */
+        int add(int owner) {
+            if (size == owners.length) {
+                grow(Math.max(initial_capacity, (int) (size * 1.75f)));
+            }
+            owners[size] = owner;
+            for (var column : columns) {
+                if      (column instanceof int[]    ints)    ints[size] = 0;
+                else if (column instanceof float[]  floats)  floats[size] = 0;
+                else if (column instanceof String[] strings) strings[size] = "";
+            }
+            return size++;
+        }
+
+        /**
+         * @return the id of the entity whose values moved into the removed slot, or -1 if none did
+         */
+        int remove(int slot) {
+            var last = --size;
+            if (slot == last) {
+                return -1;
+            }
+            owners[slot] = owners[last];
+            for (var column : columns) {
+                System.arraycopy(column, last, column, slot, 1);
+            }
+            return owners[slot];
+        }
+
+        Table copy() {
+            var copy = new Table(def);
+            copy.size = size;
+            copy.owners = Arrays.copyOf(owners, size);
+            for (int i = 0; i < columns.length; i++) {
+                copy.columns[i] = copy_of(columns[i], size);
+            }
+            return copy;
+        }
+
+        private void grow(int capacity) {
+            owners = Arrays.copyOf(owners, capacity);
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = copy_of(columns[i], capacity);
+            }
+        }
+
+        private static Object copy_of(Object column, int length) {
+            if      (column instanceof int[]   ints)   return Arrays.copyOf(ints, length);
+            else if (column instanceof float[] floats) return Arrays.copyOf(floats, length);
+            else                                       return Arrays.copyOf((String[]) column, length);
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Bucket fill for tile layers: replaces the connected region of cells that share the start cell's
+ * tileset index with a pattern tiled across it, anchored at the start cell.
+ * <p>
+ * Scanline fill, each step fills a whole horizontal span then queues one seed per matching run in the rows
+ * above and below it, so the work stack stays small and nothing recurses. The stack, the span list and the
+ * visited marks are reused between fills, visited marks are stamped with a generation number so they never
+ * need clearing. Cells that get a pattern tile equal to the index being replaced are kept from matching again
+ * by the visited marks.
+ */
+public class FloodFill {
+
+    private final IntArray stack = new IntArray();
+    private final IntArray spans = new IntArray();
+    private int[] visited = new int[0];
+    private int generation = 0;
+
+    /**
+     * Fill the region around (start_x, start_y), marking it changed and adding an undo command to the world's history
+     *
+     * @return the number of cells in the region
+     */
+    public int fill(Level level, Layer.Tiles layer, int start_x, int start_y, TilePattern pattern) {
+        var tile_data = (Layer.TileData) layer.data;
+        if (pattern.is_empty() || !tile_data.in_bounds(start_x, start_y)) return 0;
+
+        var target = tile_data.get(start_x, start_y);
+
+        // nothing would change, and the region would otherwise be walked for nothing
+        if (pattern.cols == 1 && pattern.rows == 1 && pattern.indices[0] == target) return 0;
+
+        next_generation(tile_data.cols * tile_data.rows);
+
+        var min_x = start_x;
+        var min_y = start_y;
+        var max_x = start_x;
+        var max_y = start_y;
+        var num_cells = 0;
+
+        stack.clear();
+        spans.clear();
+        stack.add(tile_data.index(start_x, start_y));
+        while (stack.notEmpty()) {
+            var seed = stack.pop();
+            var x = seed % tile_data.cols;
+            var y = seed / tile_data.cols;
+            if (!matches(tile_data, x, y, target)) continue;
+
+            // widen to the whole span on this row
+            var left = x;
+            var right = x;
+            while (left > 0 && matches(tile_data, left - 1, y, target)) left--;
+            while (right < tile_data.cols - 1 && matches(tile_data, right + 1, y, target)) right++;
+
+            var row_start = tile_data.index(0, y);
+            for (int cell_x = left; cell_x <= right; cell_x++) {
+                visited[row_start + cell_x] = generation;
+                var value = pattern.get_tiled(cell_x - start_x, y - start_y);
+                if (value != TilePattern.none) {
+                    tile_data.put(cell_x, y, value);
+                }
+            }
+            spans.add(y, left, right - left + 1);
+            num_cells += right - left + 1;
+
+            min_x = Math.min(min_x, left);
+            max_x = Math.max(max_x, right);
+            min_y = Math.min(min_y, y);
+            max_y = Math.max(max_y, y);
+
+            if (y > 0)                  push_runs(tile_data, left, right, y - 1, target);
+            if (y < tile_data.rows - 1) push_runs(tile_data, left, right, y + 1, target);
+        }
+
+        tile_data.mark(min_x, min_y, max_x - min_x + 1, max_y - min_y + 1);
+        if (level.world != null) {
+            var layer_index = level.layers.indexOf(layer);
+            level.world.history.add(new Fill(level.id, layer_index, target, spans.toArray(), start_x, start_y, pattern));
+        }
+        return num_cells;
+    }
+
+    private boolean matches(Layer.TileData tile_data, int x, int y, int target) {
+        var index = tile_data.index(x, y);
+        return visited[index] != generation && tile_data.tileset_indices[index] == target;
+    }
+
+    /**
+     * Queue the first cell of each run of matching cells in row y between left and right
+     */
+    private void push_runs(Layer.TileData tile_data, int left, int right, int y, int target) {
+        var in_run = false;
+        for (int x = left; x <= right; x++) {
+            var match = matches(tile_data, x, y, target);
+            if (match && !in_run) {
+                stack.add(tile_data.index(x, y));
+            }
+            in_run = match;
+        }
+    }
+
+    private void next_generation(int num_cells) {
+        if (visited.length < num_cells) {
+            visited = new int[num_cells];
+            generation = 0;
+        }
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(visited, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Undo command for a fill: the spans it covered, as (row, first column, length),
+     * plus what's needed to paint the pattern again on redo
+     */
+    static class Fill implements History.Command {
+        final int level_id;
+        final int layer_index;
+        final int target;
+        final int[] spans;
+        final int start_x;
+        final int start_y;
+        final TilePattern pattern;
+
+        Fill(int level_id, int layer_index, int target, int[] spans, int start_x, int start_y, TilePattern pattern) {
+            this.level_id = level_id;
+            this.layer_index = layer_index;
+            this.target = target;
+            this.spans = spans;
+            this.start_x = start_x;
+            this.start_y = start_y;
+            this.pattern = new TilePattern(pattern);
+        }
+
+        @Override
+        public void undo(World world) {
+            // every filled cell held the target index beforehand
+            apply(world, false);
+        }
+
+        @Override
+        public void redo(World world) {
+            apply(world, true);
+        }
+
+        @Override
+        public int size() {
+            return 16 + spans.length + pattern.indices.length;
+        }
+
+        private void apply(World world, boolean paint) {
+            var level = world.levels_by_id.get(level_id);
+            if (level == null) return;
+
+            level.ensure_loaded();
+            if (layer_index >= level.layers.size()) return;
+            if (!(level.layers.get(layer_index).data instanceof Layer.TileData tile_data)) return;
+
+            var min_x = Integer.MAX_VALUE;
+            var min_y = Integer.MAX_VALUE;
+            var max_x = Integer.MIN_VALUE;
+            var max_y = Integer.MIN_VALUE;
+            for (int i = 0; i < spans.length; i += 3) {
+                var y = spans[i];
+                var left = spans[i + 1];
+                var right = Math.min(left + spans[i + 2], tile_data.cols) - 1;
+                if (y >= tile_data.rows) continue;
+
+                for (int x = left; x <= right; x++) {
+                    var value = paint ? pattern.get_tiled(x - start_x, y - start_y) : target;
+                    if (value != TilePattern.none) {
+                        tile_data.put(x, y, value);
+                    }
+                }
+                min_x = Math.min(min_x, left);
+                max_x = Math.max(max_x, right);
+                min_y = Math.min(min_y, y);
+                max_y = Math.max(max_y, y);
+            }
+            if (min_x <= max_x) {
+                tile_data.mark(min_x, min_y, max_x - min_x + 1, max_y - min_y + 1);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,370 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.LongArray;
+
+import java.util.Arrays;
+
+/**
+ * Undo / redo for edits, kept as a stack of commands.
+ * <p>
+ * Tile edits are grouped into strokes: every cell changed between begin_stroke() and end_stroke()
+ * becomes one command, with repeated changes to the same cell merged so it only keeps the first old value
+ * and the last new value. When a stroke ends its cells are sorted and squashed into runs of neighboring cells
+ * that share the same old and new values, so a fill over a whole level takes a few ints rather than a copy of the layer.
+ * Strokes that tile a pattern across an area, like the rect tool, keep the pattern instead of the new values,
+ * otherwise a pattern of several tiles would break the runs at every cell.
+ * <p>
+ * Commands only hold primitive arrays and the oldest ones are dropped once the total goes over max_ints.
+ */
+public class History {
+
+    // budget for all the undo and redo commands together, in ints
+    public static final int max_ints = 1 << 20;
+
+    public interface Command {
+        void undo(World world);
+        void redo(World world);
+
+        // approximate memory used, in ints
+        int size();
+    }
+
+    private final World world;
+    private final Array<Command> undo_stack = new Array<>();
+    private final Array<Command> redo_stack = new Array<>();
+    private int total_size;
+
+    // the stroke being recorded, cells are tile data indices
+    private boolean stroke_open;
+    private int stroke_level_id;
+    private int stroke_layer_index;
+    private int stroke_cols;
+    private final IntArray stroke_cells = new IntArray();
+    private final IntArray stroke_old = new IntArray();
+    private final IntArray stroke_new = new IntArray();
+    private final IntIntMap stroke_slots = new IntIntMap();
+    // null unless the stroke's new values all come from a tiled pattern, see record_pattern()
+    private TilePattern stroke_pattern;
+    private int stroke_pattern_x;
+    private int stroke_pattern_y;
+    private final LongArray sort_keys = new LongArray();
+    private final IntArray runs = new IntArray();
+
+    public History(World world) {
+        this.world = world;
+        this.total_size = 0;
+        this.stroke_open = false;
+    }
+
+    public boolean can_undo() {
+        return undo_stack.notEmpty();
+    }
+
+    public boolean can_redo() {
+        return redo_stack.notEmpty();
+    }
+
+    public void clear() {
+        end_stroke();
+        undo_stack.clear();
+        redo_stack.clear();
+        total_size = 0;
+    }
+
+    public void undo() {
+        end_stroke();
+        if (undo_stack.isEmpty()) return;
+
+        var command = undo_stack.pop();
+        command.undo(world);
+        redo_stack.add(command);
+    }
+
+    public void redo() {
+        end_stroke();
+        if (redo_stack.isEmpty()) return;
+
+        var command = redo_stack.pop();
+        command.redo(world);
+        undo_stack.add(command);
+    }
+
+    public void add(Command command) {
+        for (var undone : redo_stack) {
+            total_size -= undone.size();
+        }
+        redo_stack.clear();
+
+        undo_stack.add(command);
+        total_size += command.size();
+
+        // forget the oldest commands to stay in budget, but always keep the newest one
+        while (total_size > max_ints && undo_stack.size > 1) {
+            total_size -= undo_stack.removeIndex(0).size();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Tile strokes
+
+    public void begin_stroke() {
+        end_stroke();
+        stroke_open = true;
+    }
+
+    /**
+     * Note a cell about to change from old_value to new_value,
+     * if there's no stroke in progress this change is a stroke of its own
+     */
+    public void record_tile(Level level, Layer.Tiles layer, int x, int y, int old_value, int new_value) {
+        var tile_data = (Layer.TileData) layer.data;
+        record_cell(level.id, level.layers.indexOf(layer), tile_data.cols, tile_data.index(x, y), old_value, new_value);
+    }
+
+    /**
+     * Same as record_tile() for callers that already know where the layer is, see TileBrush
+     */
+    void record_cell(int level_id, int layer_index, int cols, int cell, int old_value, int new_value) {
+        // a stroke only covers one layer
+        var same_layer = stroke_level_id == level_id
+                      && stroke_layer_index == layer_index
+                      && stroke_cols == cols;
+        if (stroke_cells.notEmpty() && !same_layer) {
+            var was_open = stroke_open;
+            end_stroke();
+            stroke_open = was_open;
+        }
+        stroke_level_id = level_id;
+        stroke_layer_index = layer_index;
+        stroke_cols = cols;
+
+        var slot = stroke_slots.get(cell, -1);
+        if (slot == -1) {
+            stroke_slots.put(cell, stroke_cells.size);
+            stroke_cells.add(cell);
+            stroke_old.add(old_value);
+            stroke_new.add(new_value);
+        } else {
+            stroke_new.set(slot, new_value);
+        }
+
+        if (!stroke_open) {
+            end_stroke();
+        }
+    }
+
+    /**
+     * Note that the stroke's cells get the pattern tiled from (origin_x, origin_y), like TileBrush.rect(),
+     * so the stroke can keep the pattern rather than every cell's new value.
+     * If any cell ends up with something else the stroke is recorded cell by cell as usual
+     */
+    void record_pattern(TilePattern pattern, int origin_x, int origin_y) {
+        stroke_pattern = new TilePattern(pattern);
+        stroke_pattern_x = origin_x;
+        stroke_pattern_y = origin_y;
+    }
+
+    public void end_stroke() {
+        stroke_open = false;
+        var pattern = stroke_pattern;
+        stroke_pattern = null;
+        if (stroke_cells.isEmpty()) return;
+
+        // sort the cells, keeping track of where their values are
+        var num_cells = stroke_cells.size;
+        sort_keys.clear();
+        for (int slot = 0; slot < num_cells; slot++) {
+            sort_keys.add(((long) stroke_cells.get(slot) << 32) | slot);
+        }
+        Arrays.sort(sort_keys.items, 0, num_cells);
+
+        // squash into runs of (first cell, length, old value, new value), or just (first cell, length, old value)
+        // when the new values come from the pattern, skipping cells that were changed and then changed back
+        var patterned = (pattern != null && matches_pattern(pattern));
+        var stride = patterned ? 3 : 4;
+        runs.clear();
+        for (int i = 0; i < num_cells; i++) {
+            var key = sort_keys.get(i);
+            var cell = (int) (key >>> 32);
+            var slot = (int) key;
+            var old_value = stroke_old.get(slot);
+            var new_value = stroke_new.get(slot);
+            if (old_value == new_value) continue;
+
+            // NOTE: patterned runs can also reach over cells the pattern leaves alone, they're skipped when applied
+            var last = runs.size - stride;
+            var run_end = (last >= 0) ? runs.get(last) + runs.get(last + 1) : -1;
+            var extends_run = last >= 0
+                    && runs.get(last + 2) == old_value
+                    && (patterned ? skips_pattern(pattern, run_end, cell) : run_end == cell && runs.get(last + 3) == new_value);
+            if (extends_run) {
+                runs.set(last + 1, cell + 1 - runs.get(last));
+            } else if (patterned) {
+                runs.add(cell, 1, old_value);
+            } else {
+                runs.add(cell, 1, old_value, new_value);
+            }
+        }
+
+        if (runs.notEmpty()) {
+            if (patterned) {
+                add(new PatternStroke(stroke_level_id, stroke_layer_index, stroke_cols, runs.toArray(), pattern, stroke_pattern_x, stroke_pattern_y));
+            } else {
+                add(new TileStroke(stroke_level_id, stroke_layer_index, stroke_cols, runs.toArray()));
+            }
+        }
+
+        stroke_cells.clear();
+        stroke_old.clear();
+        stroke_new.clear();
+        stroke_slots.clear();
+    }
+
+    private boolean matches_pattern(TilePattern pattern) {
+        for (int slot = 0; slot < stroke_cells.size; slot++) {
+            var cell = stroke_cells.get(slot);
+            var x = cell % stroke_cols;
+            var y = cell / stroke_cols;
+            if (pattern.get_tiled(x - stroke_pattern_x, y - stroke_pattern_y) != stroke_new.get(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether the pattern leaves every cell from first_cell up to end_cell untouched
+     */
+    private boolean skips_pattern(TilePattern pattern, int first_cell, int end_cell) {
+        for (int cell = first_cell; cell < end_cell; cell++) {
+            var x = cell % stroke_cols;
+            var y = cell / stroke_cols;
+            if (pattern.get_tiled(x - stroke_pattern_x, y - stroke_pattern_y) != TilePattern.none) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Changes to a tile layer, as runs of (first cell, length, old value, new value)
+     */
+    static class TileStroke implements Command {
+        final int level_id;
+        final int layer_index;
+        final int cols;
+        final int[] runs;
+
+        TileStroke(int level_id, int layer_index, int cols, int[] runs) {
+            this.level_id = level_id;
+            this.layer_index = layer_index;
+            this.cols = cols;
+            this.runs = runs;
+        }
+
+        @Override
+        public void undo(World world) {
+            apply(world, 2);
+        }
+
+        @Override
+        public void redo(World world) {
+            apply(world, 3);
+        }
+
+        @Override
+        public int size() {
+            return 8 + runs.length;
+        }
+
+        private void apply(World world, int value_offset) {
+            var level = world.levels_by_id.get(level_id);
+            if (level == null) return;
+
+            level.ensure_loaded();
+            if (layer_index >= level.layers.size()) return;
+            if (!(level.layers.get(layer_index).data instanceof Layer.TileData tile_data)) return;
+
+            // NOTE: cells are remapped through the column count they were recorded with,
+            //  resizing a level keeps cells at the same grid position but changes their index
+            for (int i = 0; i < runs.length; i += 4) {
+                var first_cell = runs[i];
+                var length = runs[i + 1];
+                var value = runs[i + value_offset];
+                for (int cell = first_cell; cell < first_cell + length; cell++) {
+                    var x = cell % cols;
+                    var y = cell / cols;
+                    if (tile_data.in_bounds(x, y)) {
+                        tile_data.set(x, y, value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Changes to a tile layer that tiled a pattern from (origin_x, origin_y), as runs of (first cell, length, old value),
+     * the new values come from the pattern. Cells in a run that the pattern doesn't paint are left alone
+     */
+    static class PatternStroke implements Command {
+        final int level_id;
+        final int layer_index;
+        final int cols;
+        final int[] runs;
+        final TilePattern pattern;
+        final int origin_x;
+        final int origin_y;
+
+        PatternStroke(int level_id, int layer_index, int cols, int[] runs, TilePattern pattern, int origin_x, int origin_y) {
+            this.level_id = level_id;
+            this.layer_index = layer_index;
+            this.cols = cols;
+            this.runs = runs;
+            this.pattern = pattern;
+            this.origin_x = origin_x;
+            this.origin_y = origin_y;
+        }
+
+        @Override
+        public void undo(World world) {
+            apply(world, false);
+        }
+
+        @Override
+        public void redo(World world) {
+            apply(world, true);
+        }
+
+        @Override
+        public int size() {
+            return 12 + runs.length + pattern.indices.length;
+        }
+
+        private void apply(World world, boolean paint) {
+            var level = world.levels_by_id.get(level_id);
+            if (level == null) return;
+
+            level.ensure_loaded();
+            if (layer_index >= level.layers.size()) return;
+            if (!(level.layers.get(layer_index).data instanceof Layer.TileData tile_data)) return;
+
+            // NOTE: remapped through the recorded column count, same as TileStroke
+            for (int i = 0; i < runs.length; i += 3) {
+                var first_cell = runs[i];
+                var length = runs[i + 1];
+                for (int cell = first_cell; cell < first_cell + length; cell++) {
+                    var x = cell % cols;
+                    var y = cell / cols;
+                    var pattern_value = pattern.get_tiled(x - origin_x, y - origin_y);
+                    if (pattern_value != TilePattern.none && tile_data.in_bounds(x, y)) {
+                        tile_data.set(x, y, paint ? pattern_value : runs[i + 2]);
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,409 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.Gdx;
+import lando.systems.led.utils.Bytes;
+import lando.systems.led.utils.RectI;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Append-only log of the edits made since the last save, so work survives without rewriting the whole world.
+ * Records are buffered as they happen and appended to the file once per frame by {@link #flush()},
+ * {@link #replay(World)} applies them over the last saved world when it's loaded.
+ *
+ * <pre>
+ * per record:
+ *   byte  type
+ *   tiles:         varint level id, varint layer index, varint x, y, w, h (cells),
+ *                  runs of (varint length, zigzag value) covering w * h tileset indices, row by row
+ *   bounds:        varint level id, zigzag x, y, w, h (pixels)
+ *   level added:   varint level id, string name, zigzag x, y, w, h (pixels)
+ *   level deleted: varint level id
+ *   layer added:   varint level id, byte layer type, string tileset filename, varint tileset grid size
+ * </pre>
+ *
+ * When a save starts the journal is rotated aside, and that part is deleted once the save is safely written,
+ * so the journal only ever holds what the world file doesn't.
+ * Records hold absolute values rather than changes, so replaying some that already made it into the world file is harmless.
+ * A record cut short by a crash is dropped on replay along with anything after it.
+ */
+public class Journal {
+
+    // once the journal gets this big a background save is started to fold it into the world file
+    public static final long compact_size = 4 * 1024 * 1024;
+
+    static final byte record_tiles         = 1;
+    static final byte record_bounds        = 2;
+    static final byte record_level_added   = 3;
+    static final byte record_level_deleted = 4;
+    static final byte record_layer_added   = 5;
+
+    private final String filename;
+
+    private Path path;
+    private Path rotated_path;
+    private FileChannel channel;
+    private ByteBuffer pending = ByteBuffer.allocate(16 * 1024);
+    private long written_size;
+    private boolean replaying;
+
+    // NOTE: resolved lazily so a world can be created before Gdx.files is available
+    public Journal(String filename) {
+        this.filename = filename;
+        this.channel = null;
+        this.written_size = 0;
+        this.replaying = false;
+    }
+
+    /**
+     * Bytes in the journal since the last rotation, including what hasn't been flushed yet
+     */
+    public long size() {
+        return written_size + pending.position();
+    }
+
+    // ------------------------------------------------------------------------
+    // Recording
+
+    public void record_tiles(Level level, int layer_index, Layer.TileData tile_data, RectI cells) {
+        if (replaying) return;
+
+        ensure(1 + 6 * Bytes.max_varint_size);
+        pending.put(record_tiles);
+        Bytes.put_varint(pending, level.id);
+        Bytes.put_varint(pending, layer_index);
+        Bytes.put_varint(pending, cells.x);
+        Bytes.put_varint(pending, cells.y);
+        Bytes.put_varint(pending, cells.w);
+        Bytes.put_varint(pending, cells.h);
+
+        var indices = tile_data.tileset_indices;
+        var num_cells = cells.w * cells.h;
+        var i = 0;
+        while (i < num_cells) {
+            var value = indices[tile_data.index(cells.x + i % cells.w, cells.y + i / cells.w)];
+            var run_start = i;
+            while (i < num_cells && indices[tile_data.index(cells.x + i % cells.w, cells.y + i / cells.w)] == value) {
+                i++;
+            }
+            ensure(2 * Bytes.max_varint_size);
+            Bytes.put_varint(pending, i - run_start);
+            Bytes.put_zigzag(pending, value);
+        }
+    }
+
+    public void record_bounds(Level level) {
+        if (replaying) return;
+
+        ensure(1 + 5 * Bytes.max_varint_size);
+        pending.put(record_bounds);
+        Bytes.put_varint(pending, level.id);
+        put_bounds(level.pixel_bounds);
+    }
+
+    public void record_level_added(Level level) {
+        if (replaying) return;
+
+        ensure(1 + 5 * Bytes.max_varint_size + Bytes.string_size(level.name));
+        pending.put(record_level_added);
+        Bytes.put_varint(pending, level.id);
+        Bytes.put_string(pending, level.name);
+        put_bounds(level.pixel_bounds);
+    }
+
+    public void record_level_deleted(Level level) {
+        if (replaying) return;
+
+        ensure(1 + Bytes.max_varint_size);
+        pending.put(record_level_deleted);
+        Bytes.put_varint(pending, level.id);
+    }
+
+    public void record_layer_added(Level level, Layer layer) {
+        if (replaying) return;
+
+        var tileset_filename = "";
+        var tileset_grid_size = 0;
+        var tileset_attrib = layer.get_attribute(Layer.TilesetAttrib.class);
+        if (tileset_attrib != null && tileset_attrib.tileset.filename != null) {
+            tileset_filename = tileset_attrib.tileset.filename;
+            tileset_grid_size = tileset_attrib.tileset.grid_size;
+        }
+
+        ensure(2 + 2 * Bytes.max_varint_size + Bytes.string_size(tileset_filename));
+        pending.put(record_layer_added);
+        Bytes.put_varint(pending, level.id);
+        pending.put((byte) layer.type.ordinal());
+        Bytes.put_string(pending, tileset_filename);
+        Bytes.put_varint(pending, tileset_grid_size);
+    }
+
+    private void put_bounds(RectI bounds) {
+        Bytes.put_zigzag(pending, bounds.x);
+        Bytes.put_zigzag(pending, bounds.y);
+        Bytes.put_zigzag(pending, bounds.w);
+        Bytes.put_zigzag(pending, bounds.h);
+    }
+
+    private void ensure(int needed) {
+        pending = Bytes.ensure(pending, needed);
+    }
+
+    // ------------------------------------------------------------------------
+    // File management
+
+    /**
+     * Append everything recorded since the last flush, called once a frame
+     */
+    public void flush() {
+        if (pending.position() == 0) return;
+
+        pending.flip();
+        try {
+            if (channel == null) {
+                resolve_paths();
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                channel = FileChannel.open(path, CREATE, WRITE, APPEND);
+                written_size = channel.size();
+            }
+            while (pending.hasRemaining()) {
+                written_size += channel.write(pending);
+            }
+        } catch (IOException e) {
+            Gdx.app.error("failed", "Journal write", e);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Set the current journal aside before a save starts, edits from here on go to a fresh one.
+     * If an earlier rotated journal is still around its save never finished, so this one is added to it
+     */
+    public void rotate() {
+        flush();
+        close();
+        resolve_paths();
+        try {
+            if (!Files.exists(path)) return;
+
+            if (Files.exists(rotated_path)) {
+                try (var from = FileChannel.open(path, READ);
+                     var to = FileChannel.open(rotated_path, WRITE, APPEND)) {
+                    var position = 0L;
+                    var size = from.size();
+                    while (position < size) {
+                        position += from.transferTo(position, size - position, to);
+                    }
+                    to.force(false);
+                }
+                Files.delete(path);
+            } else {
+                Files.move(path, rotated_path, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            Gdx.app.error("failed", "Journal rotate", e);
+        }
+    }
+
+    /**
+     * Called once the save that followed {@link #rotate()} is safely written
+     */
+    public void discard_rotated() {
+        resolve_paths();
+        try {
+            Files.deleteIfExists(rotated_path);
+        } catch (IOException e) {
+            Gdx.app.error("failed", "Journal discard", e);
+        }
+    }
+
+    public void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Gdx.app.error("failed", "Journal close", e);
+            }
+            channel = null;
+        }
+        written_size = 0;
+    }
+
+    private void resolve_paths() {
+        if (path == null) {
+            path = Gdx.files.local(filename).file().toPath();
+            rotated_path = path.resolveSibling(path.getFileName() + ".old");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Replay
+
+    /**
+     * Apply the rotated journal, then the current one, to a freshly loaded world
+     */
+    public void replay(World world) {
+        flush();
+        close();
+        resolve_paths();
+
+        replaying = true;
+        try {
+            replay_file(world, rotated_path);
+            replay_file(world, path);
+        } finally {
+            replaying = false;
+        }
+
+        // the replayed edits are already in the journal, don't record them again next update
+        for (var level : world.levels) {
+            for (var layer : level.layers) {
+                if (layer.data instanceof Layer.TileData tile_data) {
+                    tile_data.edited.clear();
+                }
+            }
+        }
+    }
+
+    private void replay_file(World world, Path file) {
+        if (!Files.exists(file)) return;
+
+        ByteBuffer buffer;
+        try (var channel = FileChannel.open(file, READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            Gdx.app.error("failed", "Journal replay", e);
+            return;
+        }
+
+        var num_records = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                var type = buffer.get();
+                switch (type) {
+                    case record_tiles         -> replay_tiles(world, buffer);
+                    case record_bounds        -> replay_bounds(world, buffer);
+                    case record_level_added   -> replay_level_added(world, buffer);
+                    case record_level_deleted -> replay_level_deleted(world, buffer);
+                    case record_layer_added   -> replay_layer_added(world, buffer);
+                    default -> throw new IllegalStateException("Unknown journal record type " + type);
+                }
+                num_records++;
+            }
+        } catch (BufferUnderflowException | IllegalStateException e) {
+            Gdx.app.error("failed", "Journal replay stopped at a damaged record in " + file.getFileName(), e);
+        }
+        Gdx.app.log("replayed", file.getFileName() + " (" + num_records + " records)");
+    }
+
+    private void replay_tiles(World world, ByteBuffer buffer) {
+        var level = world.levels_by_id.get(Bytes.get_varint(buffer));
+        var layer_index = Bytes.get_varint(buffer);
+        var x = Bytes.get_varint(buffer);
+        var y = Bytes.get_varint(buffer);
+        var w = Bytes.get_varint(buffer);
+        var h = Bytes.get_varint(buffer);
+
+        // NOTE: records for levels or layers that are gone still have to be read past
+        Layer.TileData tile_data = null;
+        if (level != null) {
+            level.ensure_loaded();
+            if (layer_index < level.layers.size() && level.layers.get(layer_index).data instanceof Layer.TileData data) {
+                tile_data = data;
+            }
+        }
+
+        var num_cells = w * h;
+        var cell = 0;
+        while (cell < num_cells) {
+            var length = Bytes.get_varint(buffer);
+            var value = Bytes.get_zigzag(buffer);
+            if (tile_data != null) {
+                for (int i = cell; i < cell + length; i++) {
+                    var cell_x = x + i % w;
+                    var cell_y = y + i / w;
+                    if (tile_data.in_bounds(cell_x, cell_y)) {
+                        tile_data.set(cell_x, cell_y, value);
+                    }
+                }
+            }
+            cell += length;
+        }
+    }
+
+    private void replay_bounds(World world, ByteBuffer buffer) {
+        var level = world.levels_by_id.get(Bytes.get_varint(buffer));
+        var x = Bytes.get_zigzag(buffer);
+        var y = Bytes.get_zigzag(buffer);
+        var w = Bytes.get_zigzag(buffer);
+        var h = Bytes.get_zigzag(buffer);
+        if (level == null) return;
+
+        level.ensure_loaded();
+        level.pixel_bounds.set(x, y, w, h);
+        level.normalize_bounds();
+
+        // same as finishing a resize in WorldInput
+        var tile_layer = (Layer.Tiles) level.get_layer(Layer.Tiles.class);
+        if (tile_layer != null) {
+            tile_layer.regenerate();
+        }
+    }
+
+    private void replay_level_added(World world, ByteBuffer buffer) {
+        var id = Bytes.get_varint(buffer);
+        var name = Bytes.get_string(buffer);
+        var bounds = RectI.of(
+                Bytes.get_zigzag(buffer), Bytes.get_zigzag(buffer),
+                Bytes.get_zigzag(buffer), Bytes.get_zigzag(buffer));
+        if (world.levels_by_id.containsKey(id)) return;
+
+        var level = new Level(new LevelInfo(name, bounds));
+        level.id = id;
+        world.add_level(level);
+    }
+
+    private void replay_level_deleted(World world, ByteBuffer buffer) {
+        var level = world.levels_by_id.get(Bytes.get_varint(buffer));
+        if (level != null) {
+            world.delete_level(level);
+        }
+    }
+
+    private void replay_layer_added(World world, ByteBuffer buffer) {
+        var level = world.levels_by_id.get(Bytes.get_varint(buffer));
+        var type = Layer.Type.values()[buffer.get()];
+        var tileset_filename = Bytes.get_string(buffer);
+        var tileset_grid_size = Bytes.get_varint(buffer);
+        if (level == null) return;
+
+        level.ensure_loaded();
+        switch (type) {
+            case tile -> {
+                if (!level.has_layer(Layer.Tiles.class)) {
+                    var layer = new Layer.Tiles(level);
+                    if (!tileset_filename.isEmpty()) {
+                        layer.get_attribute(Layer.TilesetAttrib.class).load(tileset_filename, tileset_grid_size);
+                    }
+                    level.add_layer(layer);
+                }
+            }
+            case entity -> {
+                if (!level.has_layer(Layer.Entities.class)) {
+                    level.add_layer(new Layer.Entities(level));
+                }
+            }
+        }
+    }
+
+}
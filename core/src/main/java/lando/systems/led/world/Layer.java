@@ -1,18 +1,23 @@
 package lando.systems.led.world;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.scenes.scene2d.utils.ScissorStack;
-import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.ObjectMap;
+import lando.systems.led.Assets;
 import lando.systems.led.input.Inputs;
+import lando.systems.led.utils.DirtyRects;
 import lando.systems.led.utils.RectI;
+import lando.systems.led.utils.SpatialHash;
 import lombok.RequiredArgsConstructor;
 import space.earlygrey.shapedrawer.ShapeDrawer;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 
 public abstract class Layer {
 
@@ -31,7 +36,18 @@ public abstract class Layer {
         this.attributes = new ObjectMap<>();
     }
 
-    public abstract void render(ShapeDrawer drawer, SpriteBatch batch);
+    public void update(float dt) {}
+
+    public abstract void render(ShapeDrawer drawer, Batch batch);
+
+    /**
+     * Draw a cheaper version of the layer for when the camera is zoomed far out
+     */
+    public void render_lod(ShapeDrawer drawer, Batch batch) {
+        render(drawer, batch);
+    }
+
+    public void dispose() {}
 
     public <T extends Attribute> T get_attribute(Class<T> clazz) {
         var attrib = attributes.get(clazz);
@@ -68,6 +84,16 @@ public abstract class Layer {
         private final Rectangle scissors = new Rectangle();
         private final Rectangle clip_bounds = new Rectangle();
 
+        private final RectI view_bounds = RectI.zero();
+        private final RectI visible_cells = RectI.zero();
+
+        // NOTE: chunks are stored row major like the tiles in TileData
+        private TileChunk[] chunks = new TileChunk[0];
+        private int chunk_cols;
+        private int chunk_rows;
+
+        private final TileLod lod = new TileLod();
+
         public Tiles(Level level) {
             super(Type.tile, level);
             this.attributes.put(NameAttrib.class, new NameAttrib(Tiles.class.getSimpleName() + count++));
@@ -84,22 +110,83 @@ public abstract class Layer {
 
             // copy over existing tile data, if there is any
             if (data != null) {
-                var old_data = (TileData) data;
-                for (int y = 0; y < new_data.rows; y++) {
-                    for (int x = 0; x < new_data.cols; x++) {
-                        if (x < old_data.cols && y < old_data.rows) {
-                            new_data.tiles[y][x].tileset_index = old_data.tiles[y][x].tileset_index;
-                        }
+                new_data.copy_from((TileData) data);
+            }
+
+            // replace existing tile data with new, all of it counts as changed
+            data = new_data;
+            new_data.dirty.add(0, 0, new_data.cols, new_data.rows);
+
+            // split into chunks, they start dirty so they get built the first time they're visible
+            chunk_cols = MathUtils.ceil((float) new_data.cols / TileChunk.size);
+            chunk_rows = MathUtils.ceil((float) new_data.rows / TileChunk.size);
+            chunks = new TileChunk[chunk_rows * chunk_cols];
+            for (int y = 0; y < chunk_rows; y++) {
+                for (int x = 0; x < chunk_cols; x++) {
+                    chunks[y * chunk_cols + x] = new TileChunk(x, y);
+                }
+            }
+        }
+
+        /**
+         * Change the tileset index of a single cell, ignoring cells outside the tile data.
+         * This is the editing path, changes made here can be undone
+         */
+        public void set_tile(int x, int y, int tileset_index) {
+            var tile_data = (TileData) data;
+            if (!tile_data.in_bounds(x, y)) return;
+
+            var old_index = tile_data.get(x, y);
+            if (old_index == tileset_index) return;
+
+            if (level.world != null) {
+                level.world.history.record_tile(level, this, x, y, old_index, tileset_index);
+            }
+            tile_data.set(x, y, tileset_index);
+        }
+
+        /**
+         * Hand the cells changed since last frame to anything that caches tile contents,
+         * then reset the dirty regions for the next frame
+         */
+        @Override
+        public void update(float dt) {
+            var tile_data = (TileData) data;
+
+            if (!tile_data.dirty.is_empty()) {
+                for (int i = 0; i < tile_data.dirty.rects.size; i++) {
+                    var rect = tile_data.dirty.rects.get(i);
+                    invalidate_chunks(rect);
+                    lod.invalidate(rect);
+                }
+                tile_data.dirty.clear();
+            }
+
+            if (!tile_data.edited.is_empty()) {
+                if (level.world != null) {
+                    var layer_index = level.layers.indexOf(this);
+                    for (int i = 0; i < tile_data.edited.rects.size; i++) {
+                        level.world.journal.record_tiles(level, layer_index, tile_data, tile_data.edited.rects.get(i));
                     }
                 }
+                tile_data.edited.clear();
             }
+        }
 
-            // replace existing tile data with new
-            data = new_data;
+        private void invalidate_chunks(RectI cells) {
+            var min_x = Math.max(0,              cells.left()        / TileChunk.size);
+            var min_y = Math.max(0,              cells.bottom()      / TileChunk.size);
+            var max_x = Math.min(chunk_cols - 1, (cells.right() - 1) / TileChunk.size);
+            var max_y = Math.min(chunk_rows - 1, (cells.top()   - 1) / TileChunk.size);
+            for (int y = min_y; y <= max_y; y++) {
+                for (int x = min_x; x <= max_x; x++) {
+                    chunks[y * chunk_cols + x].dirty = true;
+                }
+            }
         }
 
         @Override
-        public void render(ShapeDrawer drawer, SpriteBatch batch) {
+        public void render(ShapeDrawer drawer, Batch batch) {
             var tile_data = (TileData) data;
             var grid_attrib = get_attribute(GridAttrib.class);
             var tileset_attrib = get_attribute(TilesetAttrib.class);
@@ -110,10 +197,43 @@ public abstract class Layer {
                 clip_bounds.set(level.pixel_bounds.x, level.pixel_bounds.y, level.pixel_bounds.w, level.pixel_bounds.h);
                 ScissorStack.calculateScissors(Inputs.camera_input.get_camera(), batch.getTransformMatrix(), clip_bounds, scissors);
                 if (ScissorStack.pushScissors(scissors)) {
-                    for (int y = 0; y < tile_data.rows; y++) {
-                        for (int x = 0; x < tile_data.cols; x++) {
-                            var tile = tile_data.tiles[y][x];
-                            tile.render(drawer, batch, level, grid_attrib, tileset_attrib);
+                    // only submit the tiles that overlap the camera's view
+                    var visible = get_visible_cells(tile_data, grid_attrib.size, visible_cells);
+                    if (visible.w > 0 && visible.h > 0) {
+                        var grid_size = grid_attrib.size;
+                        var left   = level.pixel_bounds.x + visible.left()   * grid_size;
+                        var right  = level.pixel_bounds.x + visible.right()  * grid_size;
+                        var bottom = level.pixel_bounds.y + visible.bottom() * grid_size;
+                        var top    = level.pixel_bounds.y + visible.top()    * grid_size;
+
+                        // background and grid lines for the visible cells, one quad however many cells there are
+                        // see shaders/grid.frag, it's drawn with the white pixel so it's on the same texture as the tiles
+                        var shader = Assets.grid_shader;
+                        batch.setShader(shader);
+                        shader.setUniformf("u_pixel_size", Inputs.camera_input.get_pixel_size());
+                        shader.setUniformf("u_grid_origin", level.pixel_bounds.x, level.pixel_bounds.y);
+                        shader.setUniformf("u_grid_size", grid_size);
+                        shader.setUniformf("u_fill_color", tile_color);
+                        shader.setUniformf("u_line_color", tile_outline);
+                        batch.draw(Tilesets.white_pixel(), left, bottom, right - left, top - bottom);
+                        batch.setShader(null);
+
+                        // tile textures, from the cached vertices of each visible chunk
+                        var tileset = tileset_attrib.tileset;
+                        if (tileset.texture != null) {
+                            var min_chunk_x = visible.left()         / TileChunk.size;
+                            var min_chunk_y = visible.bottom()       / TileChunk.size;
+                            var max_chunk_x = (visible.right() - 1)  / TileChunk.size;
+                            var max_chunk_y = (visible.top()   - 1)  / TileChunk.size;
+                            for (int y = min_chunk_y; y <= max_chunk_y; y++) {
+                                for (int x = min_chunk_x; x <= max_chunk_x; x++) {
+                                    var chunk = chunks[y * chunk_cols + x];
+                                    if (chunk.needs_rebuild(tileset)) {
+                                        chunk.rebuild(tile_data, tileset, level.pixel_bounds.x, level.pixel_bounds.y, grid_size);
+                                    }
+                                    chunk.render(batch);
+                                }
+                            }
                         }
                     }
                     batch.flush();
@@ -121,24 +241,72 @@ public abstract class Layer {
                 }
             }
         }
+
+        @Override
+        public void render_lod(ShapeDrawer drawer, Batch batch) {
+            var tile_data = (TileData) data;
+            var grid_attrib = get_attribute(GridAttrib.class);
+            var tileset = get_attribute(TilesetAttrib.class).tileset;
+
+            // one downsampled quad for the whole layer, no grid lines
+            if (tile_data.visible && tileset.texture != null) {
+                lod.render(batch, tile_data, tileset, level.pixel_bounds, grid_attrib.size);
+            }
+        }
+
+        @Override
+        public void dispose() {
+            lod.dispose();
+            get_attribute(TilesetAttrib.class).release();
+        }
+
+        /**
+         * Calculate the range of cells that overlap the camera's view, in grid coordinates.
+         * The range is clamped to the tile data, so it's empty when the level is off screen
+         */
+        private RectI get_visible_cells(TileData tile_data, int grid_size, RectI out) {
+            var view = Inputs.camera_input.get_view_bounds(view_bounds);
+            var origin_x = level.pixel_bounds.x;
+            var origin_y = level.pixel_bounds.y;
+
+            var min_x = Math.max(0,              Math.floorDiv(view.left()   - origin_x, grid_size));
+            var min_y = Math.max(0,              Math.floorDiv(view.bottom() - origin_y, grid_size));
+            var max_x = Math.min(tile_data.cols, Math.floorDiv(view.right()  - origin_x, grid_size) + 1);
+            var max_y = Math.min(tile_data.rows, Math.floorDiv(view.top()    - origin_y, grid_size) + 1);
+
+            return out.set(min_x, min_y, Math.max(0, max_x - min_x), Math.max(0, max_y - min_y));
+        }
     }
 
+    private static final Color tile_color = new Color(1f, 160f / 255f, 0f, 0.5f);
+    private static final Color tile_outline = new Color(139f / 255f, 69f / 255f, 19f / 255f, 0.8f);
+
     public static class Entities extends Layer {
         private static int count = 0;
 
+        private final RectI view_bounds = RectI.zero();
+        private final IntArray visible = new IntArray();
+        private final Entity entity = new Entity();
+
         public Entities(Level level) {
             super(Type.entity, level);
-            this.data = new EntityData();
+            var grid_attrib = new GridAttrib();
+            this.data = new EntityData(grid_attrib.size);
             this.attributes.put(NameAttrib.class, new NameAttrib(Entities.class.getSimpleName() + count++));
-            this.attributes.put(GridAttrib.class, new GridAttrib());
+            this.attributes.put(GridAttrib.class, grid_attrib);
         }
 
         @Override
-        public void render(ShapeDrawer drawer, SpriteBatch batch) {
+        public void render(ShapeDrawer drawer, Batch batch) {
+            // only the entities that overlap the camera's view
             var entity_data = (EntityData) data;
-            for (var entity : entity_data.entities) {
-                entity.render(drawer, batch);
+            var view = Inputs.camera_input.get_view_bounds(view_bounds);
+            var store = entity_data.store;
+            entity_data.overlapping(view, visible);
+            for (int i = 0; i < visible.size; i++) {
+                entity.set(store, store.row(visible.get(i))).render(drawer, batch);
             }
+            visible.clear();
         }
     }
 
@@ -150,22 +318,178 @@ public abstract class Layer {
         public boolean visible;
         public final int cols;
         public final int rows;
-        public Tile[][] tiles;
+
+        // NOTE: one tileset index per cell, stored row major with the origin at bottom left
+        //  ie. the cell at grid (x, y) is tileset_indices[y * cols + x]
+        //  the array can be shared with a snapshot, so changes have to go through set()
+        public int[] tileset_indices;
+
+        // set when a snapshot holds on to tileset_indices, the next write copies it first
+        private boolean shared;
+
+        // cells changed since the last Layer.Tiles.update(), in grid coordinates
+        //  dirty includes wholesale changes like a resize, edited only has changes made through set()
+        public final DirtyRects dirty = new DirtyRects();
+        public final DirtyRects edited = new DirtyRects();
+
         public TileData(RectI pixel_bounds, GridAttrib grid) {
             this.visible = true;
-            this.cols = MathUtils.ceil((float) pixel_bounds.w / grid.size);
-            this.rows = MathUtils.ceil((float) pixel_bounds.h / grid.size);
-            this.tiles = new Tile[rows][cols];
-            for (int y = 0; y < rows; y++) {
-                for (int x = 0; x < cols; x++) {
-                    tiles[y][x] = new Tile(x, y);
+            this.cols = Math.max(0, MathUtils.ceil((float) pixel_bounds.w / grid.size));
+            this.rows = Math.max(0, MathUtils.ceil((float) pixel_bounds.h / grid.size));
+            this.tileset_indices = new int[rows * cols];
+            Arrays.fill(tileset_indices, Tile.empty);
+        }
+
+        public int index(int x, int y) {
+            return y * cols + x;
+        }
+
+        public boolean in_bounds(int x, int y) {
+            return (x >= 0 && x < cols && y >= 0 && y < rows);
+        }
+
+        public int get(int x, int y) {
+            return tileset_indices[y * cols + x];
+        }
+
+        public void set(int x, int y, int tileset_index) {
+            var index = y * cols + x;
+            if (tileset_indices[index] != tileset_index) {
+                if (shared) {
+                    tileset_indices = tileset_indices.clone();
+                    shared = false;
+                }
+                tileset_indices[index] = tileset_index;
+                dirty.add(x, y);
+                edited.add(x, y);
+            }
+        }
+
+        /**
+         * Batched version of set() for writing many cells at once, doesn't track the change,
+         * follow up with one mark() covering all the cells written
+         *
+         * @return true if the cell changed
+         */
+        public boolean put(int x, int y, int tileset_index) {
+            var index = y * cols + x;
+            if (tileset_indices[index] == tileset_index) {
+                return false;
+            }
+            if (shared) {
+                tileset_indices = tileset_indices.clone();
+                shared = false;
+            }
+            tileset_indices[index] = tileset_index;
+            return true;
+        }
+
+        /**
+         * Track a region of cells written with put() as changed
+         */
+        public void mark(int x, int y, int w, int h) {
+            dirty.add(x, y, w, h);
+            edited.add(x, y, w, h);
+        }
+
+        /**
+         * Get the current tileset indices for a snapshot without copying them,
+         * they stay untouched since the next write to this tile data makes its own copy first
+         */
+        public int[] share() {
+            shared = true;
+            return tileset_indices;
+        }
+
+        /**
+         * Copy the overlapping region of another tile data into this one,
+         * one row at a time since the row lengths can differ
+         */
+        public void copy_from(TileData other) {
+            var copy_cols = Math.min(cols, other.cols);
+            var copy_rows = Math.min(rows, other.rows);
+            if (copy_cols <= 0 || copy_rows <= 0) return;
+
+            if (cols == other.cols) {
+                System.arraycopy(other.tileset_indices, 0, tileset_indices, 0, copy_rows * cols);
+            } else {
+                for (int y = 0; y < copy_rows; y++) {
+                    System.arraycopy(other.tileset_indices, y * other.cols, tileset_indices, y * cols, copy_cols);
                 }
             }
         }
     }
 
     public static class EntityData extends Data {
-        public Array<Entity> entities = new Array<>();
+        // NOTE: rows are in the order they're drawn, later ones on top
+        //  add, move and remove entities through here so the spatial index stays in step
+        public final EntityStore store = new EntityStore();
+
+        // buckets entity ids by the grid cells their bounds overlap
+        private final SpatialHash index;
+        private final IntArray query_ids = new IntArray();
+        private final RectI bounds = RectI.zero();
+
+        public EntityData(int cell_size) {
+            this.index = new SpatialHash(cell_size);
+        }
+
+        /**
+         * @return the new entity's id
+         */
+        public int add(int type, int x, int y, int w, int h, int origin_x, int origin_y) {
+            var id = store.add(type, x, y, w, h, origin_x, origin_y);
+            index.insert(id, bounds.set(x, y, w, h));
+            return id;
+        }
+
+        public void remove(int id) {
+            var row = store.row(id);
+            if (row == -1) return;
+            store.remove(row);
+            index.remove(id);
+        }
+
+        public void set_bounds(int id, int x, int y, int w, int h) {
+            var row = store.row(id);
+            if (row == -1) return;
+            store.set_bounds(row, x, y, w, h);
+            index.update(id, bounds.set(x, y, w, h));
+        }
+
+        public void move(int id, int x, int y) {
+            var row = store.row(id);
+            if (row == -1) return;
+            set_bounds(id, x, y, store.w[row], store.h[row]);
+        }
+
+        /**
+         * The id of the topmost entity whose bounds contain the point, or -1 if there isn't one.
+         * Only looks at the entities in the point's grid cell
+         */
+        public int pick(int x, int y) {
+            index.query(x, y, query_ids);
+            if (query_ids.isEmpty()) return -1;
+
+            // NOTE: ids go up in the order entities were added, which is the order they're drawn in
+            var top_id = query_ids.get(0);
+            for (int i = 1; i < query_ids.size; i++) {
+                top_id = Math.max(top_id, query_ids.get(i));
+            }
+            query_ids.clear();
+            return top_id;
+        }
+
+        /**
+         * Add the ids of the entities overlapping the area to out, in the order they're drawn.
+         * For culling and rectangle selection
+         */
+        public IntArray overlapping(RectI area, IntArray out) {
+            out.clear();
+            index.query(area, out);
+            out.sort();
+            return out;
+        }
     }
 
     // ----------------------------------------------------
@@ -186,9 +510,22 @@ public abstract class Layer {
         }
     }
 
-    @RequiredArgsConstructor
     public static class TilesetAttrib extends Attribute {
-        public final Tileset tileset = new Tileset();
+        // shared with other layers, see Tilesets
+        public Tileset tileset = Tileset.none;
+
+        public void load(String filename, int grid_size) {
+            var loaded = Tilesets.acquire(filename, grid_size);
+            release();
+            tileset = loaded;
+        }
+
+        public void release() {
+            if (tileset != Tileset.none) {
+                Tilesets.release(tileset);
+                tileset = Tileset.none;
+            }
+        }
     }
 
 }
@@ -1,19 +1,26 @@
 package lando.systems.led.world;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.math.Circle;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Align;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.ObjectMap;
 import lando.systems.led.Assets;
+import lando.systems.led.input.Inputs;
+import lando.systems.led.utils.CachedLabel;
 import lando.systems.led.utils.Point;
 import lando.systems.led.utils.RectI;
 import space.earlygrey.shapedrawer.JoinType;
 import space.earlygrey.shapedrawer.ShapeDrawer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 import static lando.systems.led.world.Level.DragHandle.Dir.*;
@@ -21,6 +28,9 @@ import static lando.systems.led.world.Level.DragHandle.Dir.*;
 public class Level {
 
     public static final int default_handle_radius = 5;
+
+    // past this camera zoom, layers draw their cheaper level of detail version instead
+    public static final float lod_zoom_threshold = 6f;
     public static final Point default_pixel_bounds = Point.at(
             10 * Layer.GridAttrib.default_size,
             6 * Layer.GridAttrib.default_size);
@@ -29,14 +39,25 @@ public class Level {
 
     public String name;
 
-    // TODO: route all changes to pixel_bounds (resizes, moves) through a method
-    //   need to update layers when pixel_bounds change and it's hard to do right now
+    // assigned by the world when the level is added, ascending in the order levels were added
+    public int id = -1;
+    World world;
+
+    // NOTE: changes to pixel_bounds (resizes, moves) should go through the set_* methods
+    //  and normalize_bounds() so the world's spatial index stays up to date
     public final RectI pixel_bounds = RectI.zero();
     public final ObjectMap<DragHandle.Dir, DragHandle> drag_handles = new ObjectMap<>(5);
 
     public final ArrayList<Layer> layers = new ArrayList<>();
 
+    // NOTE: levels read from a world file leave their layers in the file until they're first needed,
+    //  so nothing is read or decoded before then
+    WorldFile.Payload encoded_layers;
+
     private final Matrix4 sideways_text_transform = new Matrix4();
+    private final Matrix4 prev_transform = new Matrix4();
+    private final CachedLabel width_label = new CachedLabel("%d px");
+    private final CachedLabel height_label = new CachedLabel("%d px");
 
     public Level(LevelInfo json) {
         this.name = json.getName();
@@ -68,6 +89,29 @@ public class Level {
         return json;
     }
 
+    public boolean is_loaded() {
+        return (encoded_layers == null);
+    }
+
+    /**
+     * Decode this level's layers if they're still in the world file it was read from
+     */
+    public void ensure_loaded() {
+        if (encoded_layers != null) {
+            var payload = encoded_layers;
+            ByteBuffer buffer;
+            try {
+                buffer = payload.read();
+            } catch (IOException e) {
+                // NOTE: left encoded so a save still copies the layers across rather than writing the level empty
+                throw new UncheckedIOException("Reading level " + name, e);
+            }
+            encoded_layers = null;
+            payload.release();
+            WorldFile.decode_layers(this, buffer);
+        }
+    }
+
     // ------------------------------------------------------------------------
 
     public void add_layer(Layer new_layer) {
@@ -77,7 +121,20 @@ public class Level {
 
     // ------------------------------------------------------------------------
 
-    public void render(ShapeDrawer drawer, SpriteBatch batch, boolean is_active) {
+    public void update(float dt) {
+        for (int i = 0; i < layers.size(); i++) {
+            layers.get(i).update(dt);
+        }
+    }
+
+    public void render(ShapeDrawer drawer, Batch batch, boolean is_active) {
+        var is_close = Inputs.camera_input.get_camera().zoom < lod_zoom_threshold;
+
+        // layer content is only drawn for the active level or when zoomed out
+        if (is_active || !is_close) {
+            ensure_loaded();
+        }
+
         // interior
         drawer.filledRectangle(pixel_bounds.x, pixel_bounds.y, pixel_bounds.w, pixel_bounds.h, is_active ? highlight : highlight_dim);
 
@@ -100,13 +157,12 @@ public class Level {
             font.draw(batch, layout, pixel_bounds.x, pixel_bounds.y + pixel_bounds.h / 2f + layout.height / 2f);
 
             // sizes
-            layout.setText(font, String.format("%d px", pixel_bounds.w), Color.WHITE, pixel_bounds.w, Align.center, false);
+            layout.setText(font, width_label.get(pixel_bounds.w), Color.WHITE, pixel_bounds.w, Align.center, false);
             font.draw(batch, layout, pixel_bounds.x, pixel_bounds.y - 30);
 
-            // T_T all this just for sideways text
-            batch.end();
+            // sideways text, the batch flushes when its transform changes so there's no need to end and restart it
             {
-                layout.setText(font, String.format("%d px", pixel_bounds.h), Color.WHITE, pixel_bounds.h, Align.center, false);
+                layout.setText(font, height_label.get(pixel_bounds.h), Color.WHITE, pixel_bounds.h, Align.center, false);
 
                 var x = pixel_bounds.x - layout.height - 30;
                 var y = pixel_bounds.y;
@@ -114,53 +170,96 @@ public class Level {
                         .rotate(Vector3.Z, 90f)
                         .trn(x, y, 0);
 
-                var prev_matrix = batch.getTransformMatrix().cpy();
+                prev_transform.set(batch.getTransformMatrix());
                 batch.setTransformMatrix(sideways_text_transform);
-                batch.begin();
-                {
-                    font.draw(batch, layout, 0, 0);
-                }
-                batch.end();
-                batch.setTransformMatrix(prev_matrix);
+                font.draw(batch, layout, 0, 0);
+                batch.setTransformMatrix(prev_transform);
             }
-            batch.begin();
 
             // render layer content
-            var is_close = true; // TODO: calculate this
-            if (is_close) {
-                for (var layer : layers) {
+            // NOTE: indexed loops over layers, an ArrayList iterator is an allocation every frame
+            for (int i = 0; i < layers.size(); i++) {
+                var layer = layers.get(i);
+                if (is_close) {
                     layer.render(drawer, batch);
+                } else {
+                    layer.render_lod(drawer, batch);
                 }
             }
         }
+        else if (!is_close) {
+            // zoomed out far enough that layer content is cheap to draw,
+            // so show it for every level to give an overview of the world
+            for (int i = 0; i < layers.size(); i++) {
+                layers.get(i).render_lod(drawer, batch);
+            }
+        }
+    }
+
+    public void dispose() {
+        for (var layer : layers) {
+            layer.dispose();
+        }
+        if (encoded_layers != null) {
+            encoded_layers.release();
+            encoded_layers = null;
+        }
     }
 
     public void set_center_pos(float x, float y) {
         pixel_bounds.x = (int) x;
         pixel_bounds.y = (int) y;
-        update_handles();
+        bounds_changed();
     }
 
     public void set_left_bound(float x) {
         pixel_bounds.w = pixel_bounds.w + (pixel_bounds.x - (int) x);
         pixel_bounds.x = (int) x;
-        update_handles();
+        bounds_changed();
     }
 
     public void set_right_bound(float x) {
         pixel_bounds.w = (int) x - pixel_bounds.x;
-        update_handles();
+        bounds_changed();
     }
 
     public void set_down_bound(float y) {
         pixel_bounds.h = pixel_bounds.h + (pixel_bounds.y - (int) y);
         pixel_bounds.y = (int) y;
-        update_handles();
+        bounds_changed();
     }
 
     public void set_up_bound(float y) {
         pixel_bounds.h = (int) y - pixel_bounds.y;
+        bounds_changed();
+    }
+
+    /**
+     * Reconcile a same-axis edge crossover from dragging a handle past the opposite edge,
+     * ie. maintain positive width and height
+     */
+    public void normalize_bounds() {
+        if (pixel_bounds.w < 0) {
+            pixel_bounds.w = Math.abs(pixel_bounds.w);
+            pixel_bounds.x -= pixel_bounds.w;
+        }
+        if (pixel_bounds.h < 0) {
+            pixel_bounds.h = Math.abs(pixel_bounds.h);
+            pixel_bounds.y -= pixel_bounds.h;
+        }
+        bounds_changed();
+
+        // NOTE: journaled here rather than in the set_*_bound() calls since this marks the end of a drag
+        if (world != null) {
+            world.journal.record_bounds(this);
+        }
+    }
+
+    private void bounds_changed() {
         update_handles();
+        if (world != null) {
+            world.level_bounds_changed(this);
+        }
     }
 
     public void update_handles() {
@@ -182,8 +281,8 @@ public class Level {
     }
 
     public boolean has_layer(Class<? extends Layer> layer_class) {
-        for (var layer : layers) {
-            if (layer.getClass() == layer_class) {
+        for (int i = 0; i < layers.size(); i++) {
+            if (layers.get(i).getClass() == layer_class) {
                 return true;
             }
         }
@@ -192,7 +291,8 @@ public class Level {
 
     public <T extends Layer> T get_layer(Class<T> clazz) {
         // TODO: add support for multiple layers of the same type
-        for (var layer : layers) {
+        for (int i = 0; i < layers.size(); i++) {
+            var layer = layers.get(i);
             if (clazz.isInstance(layer)) {
                 return clazz.cast(layer);
             }
@@ -208,6 +308,9 @@ public class Level {
         return null;
     }
 
+    // NOTE: the tile returned by point_in_tile() is a view that gets reused between calls
+    private final Tile picked_tile = new Tile();
+
     public Tile point_in_tile(Vector3 world_pos) {
         return point_in_tile((int) world_pos.x, (int) world_pos.y);
     }
@@ -228,23 +331,57 @@ public class Level {
             return null;
         }
 
-        var tile_rect = RectI.pool.obtain();
-        for (int y = 0; y < tile_data.rows; y++) {
-            for (int x = 0; x < tile_data.cols; x++) {
-                var tile = tile_data.tiles[y][x];
-                tile_rect.set(
-                        pixel_bounds.x + tile.grid.x * grid_attr.size,
-                        pixel_bounds.y + tile.grid.y * grid_attr.size,
-                        grid_attr.size, grid_attr.size);
-                if (tile_rect.contains(world_pos_x, world_pos_y)) {
-                    RectI.pool.free(tile_rect);
-                    return tile;
-                }
+        var index = tile_index_at(world_pos_x, world_pos_y, tile_data, grid_attr.size);
+        if (index == -1) {
+            return null;
+        }
+        return picked_tile.set(tile_data, index % tile_data.cols, index / tile_data.cols);
+    }
+
+    /**
+     * Map a batch of world points to tile indices in the tile layer, in a single pass.
+     * world_points holds interleaved (x, y) pairs, and for each pair the index (y * cols + x)
+     * of the tile containing it, or -1 if it misses the tile layer, is added to out_indices.
+     *
+     * @return the number of points that landed on a tile
+     */
+    public int point_in_tiles(FloatArray world_points, IntArray out_indices) {
+        out_indices.clear();
+
+        var tiles_layer = get_layer(Layer.Tiles.class);
+        if (tiles_layer == null) {
+            return 0;
+        }
+
+        var tile_data = (Layer.TileData) tiles_layer.data;
+        var grid_attr = tiles_layer.get_attribute(Layer.GridAttrib.class);
+        if (tile_data == null || grid_attr == null || !tile_data.visible) {
+            return 0;
+        }
+
+        var num_hits = 0;
+        var num_points = world_points.size / 2;
+        out_indices.ensureCapacity(num_points);
+        for (int i = 0; i < num_points; i++) {
+            var x = (int) world_points.get(2 * i);
+            var y = (int) world_points.get(2 * i + 1);
+            var index = tile_index_at(x, y, tile_data, grid_attr.size);
+            if (index != -1) {
+                num_hits++;
             }
+            out_indices.add(index);
         }
-        RectI.pool.free(tile_rect);
+        return num_hits;
+    }
 
-        return null;
+    private int tile_index_at(int world_pos_x, int world_pos_y, Layer.TileData tile_data, int grid_size) {
+        // NOTE: floorDiv so points just below or left of the level don't round into the first row or column
+        var x = Math.floorDiv(world_pos_x - pixel_bounds.x, grid_size);
+        var y = Math.floorDiv(world_pos_y - pixel_bounds.y, grid_size);
+        if (!tile_data.in_bounds(x, y)) {
+            return -1;
+        }
+        return tile_data.index(x, y);
     }
 
     public class DragHandle {
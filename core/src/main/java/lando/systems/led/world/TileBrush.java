@@ -0,0 +1,145 @@
+package lando.systems.led.world;
+
+/**
+ * Writes strokes of tiles into a tile layer as one batch.
+ * <p>
+ * Between begin() and end() every cell changed goes into a single undo record,
+ * and the changed cells are tracked as one dirty region each time the brush is flushed
+ * instead of one per cell. The layer and its lookups are resolved once per stroke.
+ */
+public class TileBrush {
+
+    private Level level;
+    private Layer.TileData tile_data;
+    private int layer_index;
+
+    // bounds of the cells written since the last flush, in grid coordinates
+    private int min_x;
+    private int min_y;
+    private int max_x;
+    private int max_y;
+
+    public TileBrush() {
+        this.level = null;
+        this.tile_data = null;
+        reset_bounds();
+    }
+
+    public boolean is_active() {
+        return level != null;
+    }
+
+    public void begin(Level level, Layer.Tiles layer) {
+        end();
+        this.level = level;
+        this.tile_data = (Layer.TileData) layer.data;
+        this.layer_index = level.layers.indexOf(layer);
+        if (level.world != null) {
+            level.world.history.begin_stroke();
+        }
+    }
+
+    /**
+     * Stamp the pattern once with its anchor at (x, y), like a single click with the paint tool
+     */
+    public void stamp(int x, int y, TilePattern pattern) {
+        for (int py = 0; py < pattern.rows; py++) {
+            for (int px = 0; px < pattern.cols; px++) {
+                var value = pattern.indices[py * pattern.cols + px];
+                write(x + px - pattern.anchor_x, y + py - pattern.anchor_y, value);
+            }
+        }
+    }
+
+    /**
+     * Stamp the pattern at every cell along the line from (x0, y0) to (x1, y1), inclusive
+     */
+    public void line(int x0, int y0, int x1, int y1, TilePattern pattern) {
+        // bresenham
+        var dx = Math.abs(x1 - x0);
+        var dy = -Math.abs(y1 - y0);
+        var step_x = (x0 < x1) ? 1 : -1;
+        var step_y = (y0 < y1) ? 1 : -1;
+        var error = dx + dy;
+
+        var x = x0;
+        var y = y0;
+        while (true) {
+            stamp(x, y, pattern);
+            if (x == x1 && y == y1) break;
+
+            var error2 = 2 * error;
+            if (error2 >= dy) {
+                error += dy;
+                x += step_x;
+            }
+            if (error2 <= dx) {
+                error += dx;
+                y += step_y;
+            }
+        }
+    }
+
+    /**
+     * Tile the pattern across the rectangle with corners (x0, y0) and (x1, y1), inclusive,
+     * anchored at (x0, y0)
+     */
+    public void rect(int x0, int y0, int x1, int y1, TilePattern pattern) {
+        var left   = Math.max(0, Math.min(x0, x1));
+        var right  = Math.min(tile_data.cols - 1, Math.max(x0, x1));
+        var bottom = Math.max(0, Math.min(y0, y1));
+        var top    = Math.min(tile_data.rows - 1, Math.max(y0, y1));
+        if (level.world != null) {
+            level.world.history.record_pattern(pattern, x0, y0);
+        }
+        for (int y = bottom; y <= top; y++) {
+            for (int x = left; x <= right; x++) {
+                write(x, y, pattern.get_tiled(x - x0, y - y0));
+            }
+        }
+    }
+
+    /**
+     * Mark everything written since the last flush as changed, called at least once a frame while a stroke is going
+     */
+    public void flush() {
+        if (tile_data != null && min_x <= max_x) {
+            tile_data.mark(min_x, min_y, max_x - min_x + 1, max_y - min_y + 1);
+        }
+        reset_bounds();
+    }
+
+    public void end() {
+        if (level == null) return;
+
+        flush();
+        if (level.world != null) {
+            level.world.history.end_stroke();
+        }
+        level = null;
+        tile_data = null;
+    }
+
+    private void write(int x, int y, int value) {
+        if (value == TilePattern.none || !tile_data.in_bounds(x, y)) return;
+
+        var old_value = tile_data.get(x, y);
+        if (!tile_data.put(x, y, value)) return;
+
+        if (level.world != null) {
+            level.world.history.record_cell(level.id, layer_index, tile_data.cols, tile_data.index(x, y), old_value, value);
+        }
+        min_x = Math.min(min_x, x);
+        min_y = Math.min(min_y, y);
+        max_x = Math.max(max_x, x);
+        max_y = Math.max(max_y, y);
+    }
+
+    private void reset_bounds() {
+        min_x = Integer.MAX_VALUE;
+        min_y = Integer.MAX_VALUE;
+        max_x = Integer.MIN_VALUE;
+        max_y = Integer.MIN_VALUE;
+    }
+
+}
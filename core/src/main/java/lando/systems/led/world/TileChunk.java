@@ -0,0 +1,89 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+
+/**
+ * A fixed size block of cells in a tile layer that caches the sprite vertices for its tiles,
+ * so they can be submitted to the batch in one call and only rebuilt when a tile in the block changes
+ */
+public class TileChunk {
+
+    // width and height of a chunk, in cells
+    public static final int size = 32;
+
+    private static final int floats_per_sprite = 20;
+
+    public final int chunk_x;
+    public final int chunk_y;
+    public boolean dirty;
+
+    private Texture texture;
+    private float[] vertices;
+    private int num_floats;
+
+    public TileChunk(int chunk_x, int chunk_y) {
+        this.chunk_x = chunk_x;
+        this.chunk_y = chunk_y;
+        this.dirty = true;
+        this.texture = null;
+        this.vertices = new float[0];
+        this.num_floats = 0;
+    }
+
+    public boolean needs_rebuild(Tileset tileset) {
+        return dirty || texture != tileset.texture;
+    }
+
+    public void rebuild(Layer.TileData tile_data, Tileset tileset, int origin_x, int origin_y, int grid_size) {
+        var min_x = chunk_x * size;
+        var min_y = chunk_y * size;
+        var max_x = Math.min(min_x + size, tile_data.cols);
+        var max_y = Math.min(min_y + size, tile_data.rows);
+
+        // only keep room for the cells that actually have a tile in them
+        var num_sprites = 0;
+        for (int y = min_y; y < max_y; y++) {
+            for (int x = min_x; x < max_x; x++) {
+                if (tileset.get(tile_data.get(x, y)) != null) {
+                    num_sprites++;
+                }
+            }
+        }
+        if (vertices.length < num_sprites * floats_per_sprite
+         || vertices.length > 2 * num_sprites * floats_per_sprite) {
+            vertices = new float[num_sprites * floats_per_sprite];
+        }
+
+        // NOTE: same vertex layout that SpriteBatch.draw(TextureRegion, x, y, w, h) uses
+        var color = Color.WHITE_FLOAT_BITS;
+        var i = 0;
+        for (int y = min_y; y < max_y; y++) {
+            for (int x = min_x; x < max_x; x++) {
+                var region = tileset.get(tile_data.get(x, y));
+                if (region == null) continue;
+
+                var x1 = origin_x + x * grid_size;
+                var y1 = origin_y + y * grid_size;
+                var x2 = x1 + grid_size;
+                var y2 = y1 + grid_size;
+
+                vertices[i++] = x1; vertices[i++] = y1; vertices[i++] = color; vertices[i++] = region.getU();  vertices[i++] = region.getV2();
+                vertices[i++] = x1; vertices[i++] = y2; vertices[i++] = color; vertices[i++] = region.getU();  vertices[i++] = region.getV();
+                vertices[i++] = x2; vertices[i++] = y2; vertices[i++] = color; vertices[i++] = region.getU2(); vertices[i++] = region.getV();
+                vertices[i++] = x2; vertices[i++] = y1; vertices[i++] = color; vertices[i++] = region.getU2(); vertices[i++] = region.getV2();
+            }
+        }
+
+        num_floats = i;
+        texture = tileset.texture;
+        dirty = false;
+    }
+
+    public void render(Batch batch) {
+        if (num_floats == 0 || texture == null) return;
+        batch.draw(texture, vertices, 0, num_floats);
+    }
+
+}
@@ -0,0 +1,151 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.utils.Disposable;
+import lando.systems.led.utils.DirtyRects;
+import lando.systems.led.utils.RectI;
+
+/**
+ * A downsampled copy of a tile layer's contents in a single texture,
+ * drawn as one quad in place of the individual tiles when zoomed far out.
+ * Edits are queued up as dirty regions and only those texels are repainted,
+ * the next time the layer is drawn at this level of detail.
+ */
+public class TileLod implements Disposable {
+
+    // largest texture dimension, beyond this several cells get averaged into each texel
+    public static final int max_texture_size = 1024;
+
+    private Pixmap pixmap;
+    private Texture texture;
+    private Texture source_texture;
+    private int cols;
+    private int rows;
+    private int texels_per_cell;
+    private int cells_per_texel;
+    private boolean upload_needed;
+
+    private final DirtyRects pending = new DirtyRects();
+    private final RectI cells = RectI.zero();
+    private final Tileset.ColorSum color_sum = new Tileset.ColorSum();
+
+    public void invalidate(RectI cells) {
+        pending.add(cells.x, cells.y, cells.w, cells.h);
+    }
+
+    public void render(Batch batch, Layer.TileData tile_data, Tileset tileset, RectI pixel_bounds, int grid_size) {
+        if (tile_data.cols == 0 || tile_data.rows == 0) return;
+
+        // start over if the layer was resized or the tileset changed
+        if (pixmap == null || cols != tile_data.cols || rows != tile_data.rows || source_texture != tileset.texture) {
+            rebuild(tile_data, tileset);
+        }
+
+        if (!pending.is_empty()) {
+            for (int i = 0; i < pending.rects.size; i++) {
+                paint(pending.rects.get(i), tile_data, tileset);
+            }
+            pending.clear();
+            upload_needed = true;
+        }
+
+        if (upload_needed) {
+            texture.draw(pixmap, 0, 0);
+            upload_needed = false;
+        }
+
+        // NOTE: the tile data can extend slightly past the level bounds,
+        //  so only draw the part of the texture that's inside them
+        var layer_w = cols * grid_size;
+        var layer_h = rows * grid_size;
+        var u2 = (float) pixel_bounds.w / layer_w;
+        var v2 = 1f - (float) pixel_bounds.h / layer_h;
+        batch.draw(texture, pixel_bounds.x, pixel_bounds.y, pixel_bounds.w, pixel_bounds.h, 0f, 1f, u2, v2);
+    }
+
+    @Override
+    public void dispose() {
+        if (pixmap != null) {
+            pixmap.dispose();
+            pixmap = null;
+        }
+        if (texture != null) {
+            texture.dispose();
+            texture = null;
+        }
+        pending.clear();
+    }
+
+    private void rebuild(Layer.TileData tile_data, Tileset tileset) {
+        dispose();
+
+        cols = tile_data.cols;
+        rows = tile_data.rows;
+        source_texture = tileset.texture;
+
+        // use as much detail per cell as fits, then fall back to merging cells
+        var largest = Math.max(cols, rows);
+        texels_per_cell = Tileset.lod_size;
+        while (texels_per_cell > 1 && largest * texels_per_cell > max_texture_size) {
+            texels_per_cell /= 2;
+        }
+        cells_per_texel = Math.max(1, (largest + max_texture_size - 1) / max_texture_size);
+
+        var width  = (cols * texels_per_cell + cells_per_texel - 1) / cells_per_texel;
+        var height = (rows * texels_per_cell + cells_per_texel - 1) / cells_per_texel;
+        pixmap = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+        pixmap.setBlending(Pixmap.Blending.None);
+        texture = new Texture(pixmap);
+
+        pending.add(0, 0, cols, rows);
+    }
+
+    private void paint(RectI dirty, Layer.TileData tile_data, Tileset tileset) {
+        // clamp to the tile data in case the regions are from before a resize
+        var min_x = Math.max(0, dirty.left());
+        var min_y = Math.max(0, dirty.bottom());
+        var max_x = Math.min(cols, dirty.right());
+        var max_y = Math.min(rows, dirty.top());
+        cells.set(min_x, min_y, max_x - min_x, max_y - min_y);
+        if (cells.w <= 0 || cells.h <= 0) return;
+
+        if (cells_per_texel == 1) {
+            var t = texels_per_cell;
+            for (int y = cells.bottom(); y < cells.top(); y++) {
+                for (int x = cells.left(); x < cells.right(); x++) {
+                    var index = tile_data.get(x, y);
+                    // NOTE: pixmap origin is top left, tile layer origin is bottom left
+                    var px = x * t;
+                    var py = (rows - 1 - y) * t;
+                    for (int ty = 0; ty < t; ty++) {
+                        for (int tx = 0; tx < t; tx++) {
+                            pixmap.drawPixel(px + tx, py + ty, tileset.get_lod_color(index, t, tx, ty));
+                        }
+                    }
+                }
+            }
+        } else {
+            // each texel averages a block of cells, repaint every block the dirty cells touch
+            var c = cells_per_texel;
+            var min_block_x = cells.left()        / c;
+            var min_block_y = cells.bottom()      / c;
+            var max_block_x = (cells.right() - 1) / c;
+            var max_block_y = (cells.top()   - 1) / c;
+            for (int by = min_block_y; by <= max_block_y; by++) {
+                for (int bx = min_block_x; bx <= max_block_x; bx++) {
+                    color_sum.reset();
+                    for (int y = by * c; y < Math.min(rows, (by + 1) * c); y++) {
+                        for (int x = bx * c; x < Math.min(cols, (bx + 1) * c); x++) {
+                            color_sum.add(tileset.get_lod_color(tile_data.get(x, y), 1, 0, 0));
+                        }
+                    }
+                    var py = pixmap.getHeight() - 1 - by;
+                    pixmap.drawPixel(bx, py, color_sum.average());
+                }
+            }
+        }
+    }
+
+}
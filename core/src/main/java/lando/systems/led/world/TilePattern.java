@@ -0,0 +1,123 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * The tiles selected in a tileset laid out the way they get painted into a tile layer,
+ * which repeats when it's tiled across an area bigger than the selection.
+ * <p>
+ * Cells are stored row major with the origin at bottom left like {@link Layer.TileData},
+ * the anchor is the cell of the first selected tile, which is the one that lands under the cursor.
+ * Cells inside the selection's bounding box that weren't selected are {@link #none} and don't get painted.
+ */
+public class TilePattern {
+
+    public static final int none = Integer.MIN_VALUE;
+
+    public int cols;
+    public int rows;
+    public int anchor_x;
+    public int anchor_y;
+    public int[] indices;
+
+    public TilePattern() {
+        this.cols = 0;
+        this.rows = 0;
+        this.indices = new int[16];
+    }
+
+    public TilePattern(TilePattern other) {
+        this.cols = other.cols;
+        this.rows = other.rows;
+        this.anchor_x = other.anchor_x;
+        this.anchor_y = other.anchor_y;
+        this.indices = Arrays.copyOf(other.indices, other.cols * other.rows);
+    }
+
+    public boolean is_empty() {
+        return cols == 0 || rows == 0;
+    }
+
+    /**
+     * Lay out tileset indices selected from the tileset, empty if nothing is selected
+     */
+    public TilePattern set(IntArray selected_tiles, Tileset tileset) {
+        cols = 0;
+        rows = 0;
+        if (selected_tiles.isEmpty() || tileset == null || tileset.cols == 0) {
+            return this;
+        }
+
+        var min_x = Integer.MAX_VALUE;
+        var min_y = Integer.MAX_VALUE;
+        var max_x = Integer.MIN_VALUE;
+        var max_y = Integer.MIN_VALUE;
+        for (int i = 0; i < selected_tiles.size; i++) {
+            var index = selected_tiles.get(i);
+            var x = index % tileset.cols;
+            var y = index / tileset.cols;
+            min_x = Math.min(min_x, x);
+            min_y = Math.min(min_y, y);
+            max_x = Math.max(max_x, x);
+            max_y = Math.max(max_y, y);
+        }
+
+        cols = max_x - min_x + 1;
+        rows = max_y - min_y + 1;
+        if (indices.length < cols * rows) {
+            indices = new int[cols * rows];
+        }
+        Arrays.fill(indices, 0, cols * rows, none);
+
+        // NOTE: tileset origin is top left, tile layer origin is bottom left, so rows flip
+        for (int i = 0; i < selected_tiles.size; i++) {
+            var index = selected_tiles.get(i);
+            var x = index % tileset.cols - min_x;
+            var y = max_y - index / tileset.cols;
+            indices[y * cols + x] = index;
+        }
+
+        var first = selected_tiles.first();
+        anchor_x = first % tileset.cols - min_x;
+        anchor_y = max_y - first / tileset.cols;
+        return this;
+    }
+
+    /**
+     * A single cell pattern, like Tile.empty for erasing
+     */
+    public TilePattern set_single(int tileset_index) {
+        cols = 1;
+        rows = 1;
+        anchor_x = 0;
+        anchor_y = 0;
+        indices[0] = tileset_index;
+        return this;
+    }
+
+    /**
+     * The tileset index for the cell at an offset from the anchor, without repeating
+     *
+     * @return none if the offset is outside the pattern or wasn't selected
+     */
+    public int get(int dx, int dy) {
+        var x = anchor_x + dx;
+        var y = anchor_y + dy;
+        if (x < 0 || x >= cols || y < 0 || y >= rows) {
+            return none;
+        }
+        return indices[y * cols + x];
+    }
+
+    /**
+     * The tileset index for the cell at an offset from the anchor, repeating the pattern in every direction
+     */
+    public int get_tiled(int dx, int dy) {
+        var x = Math.floorMod(anchor_x + dx, cols);
+        var y = Math.floorMod(anchor_y + dy, rows);
+        return indices[y * cols + x];
+    }
+
+}
@@ -1,12 +1,26 @@
 package lando.systems.led.world;
 
+import com.badlogic.gdx.graphics.Pixmap;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.utils.Disposable;
 
+/**
+ * A tileset image split into tiles, the image itself lives in a shared atlas page.
+ * Tilesets are shared between every layer that uses the same image and grid size,
+ * get them from {@link Tilesets#acquire(String, int)} rather than loading them directly
+ */
 public class Tileset implements Disposable {
 
+    // each tile is also downsampled into a block of lod_size x lod_size colors for zoomed out rendering
+    public static final int lod_size = 4;
+
+    // stand-in for layers that don't have a tileset yet, never loaded
+    public static final Tileset none = new Tileset();
+
     public String filename;
+
+    // the atlas page this tileset was packed into, shared with other tilesets
     public Texture texture;
     public int grid_size;
     public int cols;
@@ -14,20 +28,57 @@ public class Tileset implements Disposable {
 
     private TextureRegion[][] textures;
 
-    public void load(String filename, int grid_size) {
-        if (texture != null) {
-            dispose();
-        }
+    // number of layers using this tileset, see Tilesets
+    int refs;
+
+    // the image is decoded in the background, until then there are no tiles and texture is null
+    boolean loading;
 
+    // NOTE: rgba8888 colors, rows top down like the tileset image,
+    //  indexed by [tileset_index][texel] for 4x4, 2x2 and 1x1 downsampled tiles
+    private int[][] lod_colors_4;
+    private int[][] lod_colors_2;
+    private int[] lod_colors_1;
+
+    Tileset() {
+        this.loading = false;
+    }
+
+    Tileset(String filename, int grid_size) {
         this.filename = filename;
-        this.texture = new Texture(filename);
-        this.textures = TextureRegion.split(texture, grid_size, grid_size);
         this.grid_size = grid_size;
+        this.loading = true;
+    }
+
+    public boolean is_loading() {
+        return loading;
+    }
+
+    /**
+     * Called by Tilesets on the render thread once the image is decoded,
+     * the pixmap still belongs to the caller
+     */
+    void finish_load(Pixmap pixmap) {
+        set_region(Tilesets.pack(filename, pixmap));
+        build_lod_colors(pixmap);
+        loading = false;
+    }
+
+    /**
+     * Point this tileset at where its image was packed, again after the atlas is repacked
+     */
+    void set_region(TextureRegion region) {
+        this.texture = region.getTexture();
+        this.textures = region.split(grid_size, grid_size);
         this.cols = textures[0].length;
         this.rows = textures.length;
     }
 
     public TextureRegion get(int index) {
+        if (cols == 0) {
+            return null;
+        }
+
         int x = index % cols;
         int y = index / cols;
 
@@ -44,10 +95,104 @@ public class Tileset implements Disposable {
         return textures[y][x];
     }
 
+    /**
+     * Get one texel of a downsampled tile, where texels is the downsampled tile width (1, 2 or 4)
+     * and (texel_x, texel_y) is the texel within it, top down. Returns 0 (transparent) for empty tiles
+     */
+    public int get_lod_color(int index, int texels, int texel_x, int texel_y) {
+        if (lod_colors_1 == null || index < 0 || index >= lod_colors_1.length) {
+            return 0;
+        }
+        return switch (texels) {
+            case 4  -> lod_colors_4[index][texel_y * 4 + texel_x];
+            case 2  -> lod_colors_2[index][texel_y * 2 + texel_x];
+            default -> lod_colors_1[index];
+        };
+    }
+
     @Override
     public void dispose() {
-        if (texture != null) {
-            texture.dispose();
+        // NOTE: the atlas page is shared, Tilesets takes care of it
+        texture = null;
+        textures = null;
+    }
+
+    private void build_lod_colors(Pixmap pixmap) {
+        var num_tiles = rows * cols;
+        lod_colors_4 = new int[num_tiles][lod_size * lod_size];
+        lod_colors_2 = new int[num_tiles][4];
+        lod_colors_1 = new int[num_tiles];
+
+        for (int index = 0; index < num_tiles; index++) {
+            var tile_x = (index % cols) * grid_size;
+            var tile_y = (index / cols) * grid_size;
+
+            // average blocks of the source image into the 4x4 version
+            var colors_4 = lod_colors_4[index];
+            for (int ty = 0; ty < lod_size; ty++) {
+                for (int tx = 0; tx < lod_size; tx++) {
+                    var x0 = tile_x + tx * grid_size / lod_size;
+                    var y0 = tile_y + ty * grid_size / lod_size;
+                    var x1 = Math.max(x0 + 1, tile_x + (tx + 1) * grid_size / lod_size);
+                    var y1 = Math.max(y0 + 1, tile_y + (ty + 1) * grid_size / lod_size);
+
+                    color_sum.reset();
+                    for (int y = y0; y < y1; y++) {
+                        for (int x = x0; x < x1; x++) {
+                            color_sum.add(pixmap.getPixel(x, y));
+                        }
+                    }
+                    colors_4[ty * lod_size + tx] = color_sum.average();
+                }
+            }
+
+            // then average the 4x4 version down to 2x2 and 1x1
+            var colors_2 = lod_colors_2[index];
+            for (int ty = 0; ty < 2; ty++) {
+                for (int tx = 0; tx < 2; tx++) {
+                    color_sum.reset();
+                    color_sum.add(colors_4[(2 * ty)     * lod_size + 2 * tx]);
+                    color_sum.add(colors_4[(2 * ty)     * lod_size + 2 * tx + 1]);
+                    color_sum.add(colors_4[(2 * ty + 1) * lod_size + 2 * tx]);
+                    color_sum.add(colors_4[(2 * ty + 1) * lod_size + 2 * tx + 1]);
+                    colors_2[ty * 2 + tx] = color_sum.average();
+                }
+            }
+
+            color_sum.reset();
+            for (var color : colors_2) {
+                color_sum.add(color);
+            }
+            lod_colors_1[index] = color_sum.average();
+        }
+    }
+
+    private final ColorSum color_sum = new ColorSum();
+
+    /**
+     * Accumulates rgba8888 colors channel by channel to average them
+     */
+    static class ColorSum {
+        int r, g, b, a, count;
+
+        void reset() {
+            r = g = b = a = count = 0;
+        }
+
+        void add(int rgba8888) {
+            r += (rgba8888 >>> 24) & 0xff;
+            g += (rgba8888 >>> 16) & 0xff;
+            b += (rgba8888 >>>  8) & 0xff;
+            a += (rgba8888)        & 0xff;
+            count++;
+        }
+
+        int average() {
+            if (count == 0) return 0;
+            return ((r / count) << 24)
+                 | ((g / count) << 16)
+                 | ((b / count) <<  8)
+                 |  (a / count);
         }
     }
 
@@ -0,0 +1,287 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+import lando.systems.led.Assets;
+
+/**
+ * Process wide cache of loaded tilesets, and the atlas pages their images are packed into.
+ * <p>
+ * Tilesets are keyed by image filename and grid size and reference counted, every layer using the same ones
+ * shares a single Tileset, so fifty levels with the same tileset decode and upload its image once.
+ * When the last layer lets go of a tileset it's evicted, and its image once no tileset uses it anymore.
+ * <p>
+ * Images are decoded on the asset manager's loader thread, acquire() hands back the tileset right away
+ * and {@link #update()} finishes it on the render thread when its image is ready. Until then it has no tiles,
+ * so layers using it only draw their grid.
+ * <p>
+ * Each image is packed whole, so its tiles keep their layout and can be split out of the packed region,
+ * and levels that mix tilesets still draw from one or two textures instead of switching per tileset.
+ * Pages keep their pixmaps so new images can be added later, the page texture gets re-uploaded
+ * when that happens but stays the same Texture object, so regions already handed out stay valid.
+ * A packer can't free space though, so once evicted images take up as much room as live ones
+ * the live ones get repacked into fresh pages and the old pages are disposed.
+ * <p>
+ * A small white square is packed in with the images too, see {@link #white_pixel()}, so the shape drawer
+ * can draw fills and outlines from the same texture as the tiles instead of flushing the batch between them.
+ */
+public class Tilesets {
+
+    public static final int page_size = 2048;
+    public static final int padding = 2;
+
+    private static final ObjectMap<String, Tileset> cache = new ObjectMap<>();
+    private static final Array<Tileset> pending = new Array<>();
+
+    private static PixmapPacker packer;
+    private static final ObjectMap<String, TextureRegion> regions = new ObjectMap<>();
+    private static final ObjectIntMap<String> region_refs = new ObjectIntMap<>();
+    private static int live_area;
+    private static int dead_area;
+
+    // images too big for a page get a texture of their own
+    private static final ObjectMap<String, Texture> standalone = new ObjectMap<>();
+
+    private static final Array<String> repack_names = new Array<>();
+
+    // NOTE: a few texels rather than one, the shape drawer samples the middle of the region
+    //  so it stays clear of the page's neighboring pixels at any texture coordinate precision
+    static final String white_pixel_name = "white-pixel";
+    static final int white_pixel_size = 3;
+
+    /**
+     * Find the tileset image files in the tilesets/ folder
+     */
+    public static Array<String> find_files(Array<String> out) {
+        out.clear();
+        for (var file : Gdx.files.internal("tilesets").list(".png")) {
+            out.add(file.path());
+        }
+        out.sort();
+        return out;
+    }
+
+    /**
+     * Get the shared tileset for an image and grid size, loading it if nothing else is using it.
+     * Hand it back with {@link #release(Tileset)} when done with it
+     */
+    public static Tileset acquire(String filename, int grid_size) {
+        var key = key(filename, grid_size);
+        var tileset = cache.get(key);
+        if (tileset == null) {
+            tileset = new Tileset(filename, grid_size);
+            Assets.manager.load(filename, Pixmap.class);
+            pending.add(tileset);
+            cache.put(key, tileset);
+        }
+        tileset.refs++;
+        return tileset;
+    }
+
+    public static void release(Tileset tileset) {
+        if (tileset == null || tileset.refs <= 0) return;
+
+        tileset.refs--;
+        if (tileset.refs == 0) {
+            cache.remove(key(tileset.filename, tileset.grid_size));
+            if (tileset.loading) {
+                pending.removeValue(tileset, true);
+                unload_image(tileset.filename);
+            } else {
+                release_region(tileset.filename);
+            }
+            tileset.dispose();
+        }
+    }
+
+    /**
+     * Finish loading the tilesets whose images have been decoded, called once a frame after Assets.update()
+     */
+    public static void update() {
+        for (int i = pending.size - 1; i >= 0; i--) {
+            var tileset = pending.get(i);
+            var filename = tileset.filename;
+            if (Assets.manager.isLoaded(filename, Pixmap.class)) {
+                tileset.finish_load(Assets.manager.get(filename, Pixmap.class));
+                unload_image(filename);
+                pending.removeIndex(i);
+            } else if (!Assets.manager.contains(filename)) {
+                // failed to load, the asset manager already logged why
+                tileset.loading = false;
+                pending.removeIndex(i);
+            }
+        }
+    }
+
+    /**
+     * A white region on the first atlas page, for the shape drawer. Packed the first time it's asked for.
+     * Repacking the atlas moves it to a new region, so compare against this again before reusing an old one
+     */
+    public static TextureRegion white_pixel() {
+        var region = regions.get(white_pixel_name);
+        if (region == null) {
+            var pixmap = new Pixmap(white_pixel_size, white_pixel_size, Pixmap.Format.RGBA8888);
+            pixmap.setColor(Color.WHITE);
+            pixmap.fill();
+            region = pack(white_pixel_name, pixmap);
+            pixmap.dispose();
+        }
+        return region;
+    }
+
+    public static boolean is_loading() {
+        return pending.notEmpty();
+    }
+
+    private static void unload_image(String filename) {
+        // NOTE: the decoded pixmap is only needed until it's packed
+        if (Assets.manager.contains(filename)) {
+            Assets.manager.unload(filename);
+        }
+    }
+
+    public static int num_tilesets() {
+        return cache.size;
+    }
+
+    /**
+     * How many textures the loaded tilesets are spread across
+     */
+    public static int num_textures() {
+        var num_pages = (packer != null) ? packer.getPages().size : 0;
+        return num_pages + standalone.size;
+    }
+
+    public static void dispose() {
+        for (var tileset : cache.values()) {
+            tileset.dispose();
+        }
+        cache.clear();
+        pending.clear();
+
+        if (packer != null) {
+            packer.dispose();
+            packer = null;
+        }
+        for (var texture : standalone.values()) {
+            texture.dispose();
+        }
+        standalone.clear();
+        regions.clear();
+        region_refs.clear();
+        live_area = 0;
+        dead_area = 0;
+    }
+
+    private static String key(String filename, int grid_size) {
+        return filename + '#' + grid_size;
+    }
+
+    // ------------------------------------------------------------------------
+    // Atlas pages
+
+    /**
+     * Get the packed region for an image, packing it first if it hasn't been yet.
+     * The pixmap is copied into the page, so it can be disposed afterwards
+     */
+    static TextureRegion pack(String name, Pixmap pixmap) {
+        region_refs.getAndIncrement(name, 0, 1);
+
+        var region = regions.get(name);
+        if (region != null) {
+            return region;
+        }
+
+        if (pixmap.getWidth() > page_size - 2 * padding || pixmap.getHeight() > page_size - 2 * padding) {
+            var texture = new Texture(pixmap);
+            standalone.put(name, texture);
+            region = new TextureRegion(texture);
+        } else {
+            region = pack_into_page(name, pixmap);
+            live_area += pixmap.getWidth() * pixmap.getHeight();
+        }
+
+        regions.put(name, region);
+        return region;
+    }
+
+    private static TextureRegion pack_into_page(String name, Pixmap pixmap) {
+        if (packer == null) {
+            packer = new PixmapPacker(page_size, page_size, Pixmap.Format.RGBA8888, padding, false);
+        }
+        var rect = packer.pack(name, pixmap);
+        packer.updatePageTextures(Texture.TextureFilter.Nearest, Texture.TextureFilter.Nearest, false);
+
+        var page = packer.getPage(name);
+        return new TextureRegion(page.getTexture(), (int) rect.x, (int) rect.y, (int) rect.width, (int) rect.height);
+    }
+
+    private static void release_region(String name) {
+        var refs = region_refs.getAndIncrement(name, 0, -1) - 1;
+        if (refs > 0) return;
+
+        region_refs.remove(name, 0);
+        var region = regions.remove(name);
+        if (region == null) return;
+
+        var texture = standalone.remove(name);
+        if (texture != null) {
+            texture.dispose();
+            return;
+        }
+
+        var area = region.getRegionWidth() * region.getRegionHeight();
+        live_area -= area;
+        dead_area += area;
+        if (dead_area >= live_area) {
+            repack();
+        }
+    }
+
+    /**
+     * Copy the live images out of the current pages into new ones, dropping the space held by evicted images
+     */
+    private static void repack() {
+        var old_packer = packer;
+        packer = null;
+        dead_area = 0;
+        if (old_packer == null) return;
+
+        repack_names.clear();
+        for (var name : regions.keys()) {
+            if (!standalone.containsKey(name)) {
+                repack_names.add(name);
+            }
+        }
+
+        for (var name : repack_names) {
+            var old_region = regions.get(name);
+            var w = old_region.getRegionWidth();
+            var h = old_region.getRegionHeight();
+            var pixmap = new Pixmap(w, h, Pixmap.Format.RGBA8888);
+            pixmap.setBlending(Pixmap.Blending.None);
+            pixmap.drawPixmap(old_packer.getPage(name).getPixmap(), old_region.getRegionX(), old_region.getRegionY(), w, h, 0, 0, w, h);
+            regions.put(name, pack_into_page(name, pixmap));
+            pixmap.dispose();
+        }
+        repack_names.clear();
+
+        // NOTE: the new pages are new textures, so tile chunks notice and rebuild their vertices
+        //  tilesets still loading or that failed to load have nothing packed, finish_load() packs them when they arrive
+        for (var tileset : cache.values()) {
+            var region = regions.get(tileset.filename);
+            if (tileset.loading || region == null) continue;
+            tileset.set_region(region);
+        }
+
+        old_packer.dispose();
+    }
+
+}
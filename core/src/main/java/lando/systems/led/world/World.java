@@ -1,45 +1,101 @@
 package lando.systems.led.world;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.Batch;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
 import com.badlogic.gdx.utils.Json;
 import com.badlogic.gdx.utils.JsonWriter;
 import com.github.xpenatan.imgui.ImGuiString;
 import lando.systems.led.input.Inputs;
+import lando.systems.led.utils.RectI;
+import lando.systems.led.utils.SpatialHash;
 import space.earlygrey.shapedrawer.ShapeDrawer;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+
 public class World {
 
+    // size of the spatial index buckets, in world pixels
+    static final int level_index_cell_size = 512;
+
     public String name;
 
     Level active_level;
     final Array<Level> levels;
+    final IntMap<Level> levels_by_id;
+    final SpatialHash level_index;
+    int next_level_id;
+
+    private final RectI view_bounds = RectI.zero();
+    private final IntArray query_ids = new IntArray();
+    private final Array<Level> query_levels = new Array<>();
 
     public World(String name) {
         this.name = name;
         this.levels = new Array<>();
+        this.levels_by_id = new IntMap<>();
+        this.level_index = new SpatialHash(level_index_cell_size);
+        this.next_level_id = 0;
         this.active_level = null;
     }
 
     public void update(float dt) {
+        for (var level : levels) {
+            level.update(dt);
+        }
 
+        // append this frame's edits, and fold them into the world file once they pile up
+        journal.flush();
+        if (journal.size() > Journal.compact_size && can_save()) {
+            save();
+        }
     }
 
-    public void render(ShapeDrawer drawer, SpriteBatch batch) {
-        for (var level : levels) {
+    public void render(ShapeDrawer drawer, Batch batch) {
+        // only levels that overlap the camera view, plus the active level since its handles and labels
+        // can stick out past its bounds, drawn in the order they were added like before
+        var view = Inputs.camera_input.get_view_bounds(view_bounds);
+        levels_overlapping(view, query_levels);
+        if (active_level != null && !query_levels.contains(active_level, true)) {
+            query_levels.add(active_level);
+        }
+        query_levels.sort(by_id);
+
+        for (var level : query_levels) {
             var is_active = (level == active_level);
             level.render(drawer, batch, is_active);
         }
+        query_levels.clear();
     }
 
     public void add_level(Level new_level) {
-        levels.add(new_level);
+        insert_level(new_level);
         make_active(new_level);
     }
 
+    private void insert_level(Level new_level) {
+        if (new_level.id == -1) {
+            new_level.id = next_level_id++;
+        } else {
+            next_level_id = Math.max(next_level_id, new_level.id + 1);
+        }
+        new_level.world = this;
+
+        levels.add(new_level);
+        levels_by_id.put(new_level.id, new_level);
+        level_index.insert(new_level.id, new_level.pixel_bounds);
+    }
+
+    void level_bounds_changed(Level level) {
+        level_index.update(level.id, level.pixel_bounds);
+    }
+
     public boolean is_active(Level level) {
         return (level == active_level);
     }
@@ -50,14 +106,15 @@ public class World {
 
     public void make_active(Level level) {
         if (level != null) {
-            if (levels.contains(level, true)) {
-                active_level = level;
-            } else {
-                add_level(level);
+            if (!levels.contains(level, true)) {
+                insert_level(level);
             }
+            level.ensure_loaded();
+            active_level = level;
         }
 
-        if (active_level != null) {
+        // NOTE: there's no editor ui when running headless, like in the benchmarks
+        if (active_level != null && Inputs.world_input != null) {
             // NOTE: calling setValue() on an ImGuiString doesn't entirely clear the buffer
             //  so as a workaround recreate it with the appropriate name instead
             Inputs.world_input.imgui_level_name_string = new ImGuiString(active_level.name);
@@ -67,13 +124,27 @@ public class World {
 
     public void delete_active_level() {
         if (active_level != null) {
-            levels.removeValue(active_level, true);
+            journal.record_level_deleted(active_level);
+            delete_level(active_level);
+        }
+    }
+
+    void delete_level(Level level) {
+        levels.removeValue(level, true);
+        levels_by_id.remove(level.id);
+        level_index.remove(level.id);
+        level.world = null;
+        level.dispose();
+
+        if (level == active_level) {
             active_level = null;
 
             var next_active_level = levels.random();
             if (next_active_level != null) {
                 active_level = next_active_level;
-                Inputs.camera_input.center_on_level(active_level);
+                if (Inputs.camera_input != null) {
+                    Inputs.camera_input.center_on_level(active_level);
+                }
             }
         }
     }
@@ -91,54 +162,166 @@ public class World {
     }
 
     public Level pick_level_at(int x, int y) {
-        for (var level : levels) {
-            if (level.pixel_bounds.contains(x, y)) {
-                return level;
+        // the first level added wins when several overlap the point
+        level_index.query(x, y, query_ids);
+        Level picked = null;
+        for (int i = 0; i < query_ids.size; i++) {
+            var level = levels_by_id.get(query_ids.get(i));
+            if (picked == null || level.id < picked.id) {
+                picked = level;
             }
         }
-        return null;
+        query_ids.clear();
+        return picked;
     }
 
+    /**
+     * Find all the levels whose bounds overlap the area, in no particular order
+     */
+    public Array<Level> levels_overlapping(RectI area, Array<Level> out) {
+        out.clear();
+        level_index.query(area, query_ids);
+        for (int i = 0; i < query_ids.size; i++) {
+            out.add(levels_by_id.get(query_ids.get(i)));
+        }
+        query_ids.clear();
+        return out;
+    }
+
+    private static final Comparator<Level> by_id = (a, b) -> Integer.compare(a.id, b.id);
+
     // ------------------------------------------------------------------------
     // Serialization / deserialization
 
+    // TODO: add ui in the caller, select list of files in levels/
+    //  then change signatures to save(filename) and load(filename)
+    static final String world_filename = "levels/world-test.led";
+    static final String legacy_world_filename = "levels/world-test.json";
+    static final String journal_filename = "levels/world-test.journal";
+
     private final Json json_wrangler = new Json(JsonWriter.OutputType.javascript);
+    private final WorldFile world_file = new WorldFile();
+    private final Array<Level> loaded_levels = new Array<>();
+
+    // set when the world file couldn't be read, saving then would replace it with whatever did get loaded
+    private boolean load_failed;
 
+    public final WorldSaver saver = new WorldSaver();
+    public final Journal journal = new Journal(journal_filename);
+    public final History history = new History(this);
+
+    /**
+     * Snapshot the world and write it out in the background,
+     * does nothing if the previous save is still in progress.
+     * Edits made up to now move out of the journal once the save is written
+     */
     public void save() {
-        var info = new WorldInfo();
-        info.setName(name);
+        if (!can_save()) {
+            Gdx.app.error("failed", "World save, " + world_filename + " couldn't be loaded so it's left as it is");
+            return;
+        }
 
-        for (var level : levels) {
-            var level_json = level.get_info_json(json_wrangler);
-            var level_info = json_wrangler.fromJson(LevelInfo.class, level_json);
-            info.getLevels().add(level_info);
+        var path = Gdx.files.local(world_filename).file().toPath();
+        if (!saver.is_saving()) {
+            journal.rotate();
+            saver.save(new WorldSnapshot(this), path, journal::discard_rotated);
         }
+    }
+
+    /**
+     * False after a load that couldn't read the world file, until a load succeeds,
+     * the journal keeps recording edits in the meantime
+     */
+    public boolean can_save() {
+        return !load_failed;
+    }
 
-        var file = Gdx.files.local("levels/world-test.json");
-        var info_json = json_wrangler.prettyPrint(info);
-        file.writeString(info_json, false);
+    public void dispose() {
+        saver.dispose();
+        journal.flush();
+        journal.close();
+        for (var level : levels) {
+            level.dispose();
+        }
     }
 
+    /**
+     * Load the last saved world, then replay the journal over it to pick up edits made since
+     */
     public void load() {
-        // TODO: add ui in the caller, select list of files in levels/
-        //  then change signature to load(filename)
-        var filename = "levels/world-test.json";
+        var file = Gdx.files.local(world_filename);
+        load_failed = false;
+        if (file.exists()) {
+            try {
+                load(file.file().toPath());
+            } catch (IOException e) {
+                load_failed = true;
+                Gdx.app.error("failed", "World load, saving is off so " + world_filename + " isn't overwritten", e);
+            }
+        } else if (!load_legacy_json()) {
+            // nothing was ever saved, the journal has everything
+            replace_levels(name, loaded_levels);
+        }
+
+        journal.replay(this);
+    }
+
+    /**
+     * Replace the levels with the ones in a world file, without replaying the journal
+     */
+    public void load(Path path) throws IOException {
+        try {
+            var loaded_name = world_file.read(path, loaded_levels);
+            replace_levels(loaded_name, loaded_levels);
+        } finally {
+            loaded_levels.clear();
+        }
+    }
 
-        var file = Gdx.files.local(filename);
+    /**
+     * Worlds saved before the binary format only have level names and bounds, no layers
+     */
+    private boolean load_legacy_json() {
+        var file = Gdx.files.local(legacy_world_filename);
         if (file.exists()) {
             var json = file.readString();
             var info = json_wrangler.fromJson(WorldInfo.class, json);
             if (info != null) {
-                name = info.getName();
-                Inputs.world_input.imgui_world_name_string = new ImGuiString(name);
-
-                levels.clear();
                 for (var level_info : info.getLevels()) {
-                    var level = new Level(level_info);
-                    add_level(level);
+                    loaded_levels.add(new Level(level_info));
                 }
+                replace_levels(info.getName(), loaded_levels);
+                loaded_levels.clear();
+                return true;
             }
         }
+        return false;
+    }
+
+    private void replace_levels(String new_name, Array<Level> new_levels) {
+        name = new_name;
+        history.clear();
+        if (Inputs.world_input != null) {
+            Inputs.world_input.imgui_world_name_string = new ImGuiString(name);
+        }
+
+        for (var level : levels) {
+            level.dispose();
+        }
+        levels.clear();
+        levels_by_id.clear();
+        level_index.clear();
+        active_level = null;
+        next_level_id = 0;
+
+        // NOTE: only the level that ends up active gets decoded here, the rest stay encoded
+        //  until they're drawn or edited, see Level.ensure_loaded()
+        for (var level : new_levels) {
+            insert_level(level);
+        }
+        if (levels.notEmpty()) {
+            make_active(levels.peek());
+        }
     }
 
 }
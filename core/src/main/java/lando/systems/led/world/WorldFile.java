@@ -0,0 +1,524 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.utils.Array;
+import lando.systems.led.utils.Bytes;
+import lando.systems.led.utils.RectI;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Binary world format, read and written through nio channels.
+ *
+ * <pre>
+ * int     magic 'LEDW'
+ * int     version
+ * string  world name
+ * int     level count
+ * per level:
+ *   int     id
+ *   string  name
+ *   int     x, y, w, h    (pixel bounds)
+ *   int     payload size in bytes, so a reader can skip over the payload
+ *   payload:
+ *     varint  layer count
+ *     per layer:
+ *       byte    type      (Layer.Type ordinal)
+ *       string  name      (NameAttrib)
+ *       varint  grid size (GridAttrib)
+ *       tile layers:
+ *         string  tileset filename, empty if there's no tileset
+ *         varint  tileset grid size
+ *         varint  cols, rows
+ *         runs of (varint length, zigzag value) covering cols * rows tileset indices
+ *       entity layers:
+ *         varint  def count
+ *         per def:
+ *           string  name
+ *           varint  field count
+ *           per field: string name, byte type (EntityDef.FieldType ordinal)
+ *         varint  entity count
+ *         per entity, in draw order:
+ *           varint  def index
+ *           zigzag  bounds x, y, w, h and origin x, y
+ *           its def's field values in order: int32 as zigzag, float32 as 4 bytes, text as a string
+ * </pre>
+ *
+ * Strings are a varint byte length followed by utf-8 bytes.
+ * <p>
+ * Reading only parses the level headers, each level keeps where its payload is in the file
+ * and reads and decodes its layers the first time they're needed, see {@link Payload}.
+ * The file stays open for that until every level read from it is decoded or gone.
+ * Writes go to a temp file that replaces the original afterwards instead of truncating a file that's still being read,
+ * payloads of levels that were never decoded are copied across from the old file without passing through the heap.
+ * Nothing is memory mapped, a mapping would keep windows from replacing the file until it was garbage collected.
+ */
+public class WorldFile {
+
+    static final int magic = 0x4c454457;
+    static final int version = 2;
+
+    private static final int level_header_size = 4 + 4 * 4 + 4;
+
+    private ByteBuffer header = ByteBuffer.allocate(256);
+    private ByteBuffer payload = ByteBuffer.allocate(64 * 1024);
+    private final ByteBuffer[] gather = new ByteBuffer[2];
+
+    /**
+     * Write a snapshot of a world to path, replacing whatever was there once it's complete.
+     * Safe to call off the render thread, levels_written counts up as each level goes out
+     */
+    public void write(WorldSnapshot world, Path path, AtomicInteger levels_written) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        var temp_path = path.resolveSibling(path.getFileName() + ".tmp");
+        try (var channel = FileChannel.open(temp_path, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            header.clear();
+            header = Bytes.ensure(header, 3 * 4 + Bytes.string_size(world.name));
+            header.putInt(magic);
+            header.putInt(version);
+            Bytes.put_string(header, world.name);
+            header.putInt(world.levels.size);
+            header.flip();
+            write_fully(channel, header);
+
+            for (var level : world.levels) {
+                // levels that were never decoded since the last read still have their encoded layers as-is
+                var encoded = level.encoded_layers;
+                if (encoded == null) {
+                    payload.clear();
+                    encode_layers(level);
+                    payload.flip();
+                }
+                var payload_size = (encoded != null) ? encoded.size : payload.remaining();
+
+                header.clear();
+                header = Bytes.ensure(header, level_header_size + Bytes.string_size(level.name));
+                header.putInt(level.id);
+                Bytes.put_string(header, level.name);
+                header.putInt(level.pixel_bounds.x);
+                header.putInt(level.pixel_bounds.y);
+                header.putInt(level.pixel_bounds.w);
+                header.putInt(level.pixel_bounds.h);
+                header.putInt(payload_size);
+                header.flip();
+
+                if (encoded != null) {
+                    write_fully(channel, header);
+                    encoded.transfer_to(channel);
+                } else {
+                    gather[0] = header;
+                    gather[1] = payload;
+                    while (header.hasRemaining() || payload.hasRemaining()) {
+                        channel.write(gather);
+                    }
+                }
+                levels_written.incrementAndGet();
+            }
+            channel.force(false);
+        }
+
+        Files.move(temp_path, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Read the level headers from the world file at path, adding its levels to out_levels.
+     * Layers are left encoded, see {@link Level#ensure_loaded()}
+     *
+     * @return the world name
+     */
+    public String read(Path path, Array<Level> out_levels) throws IOException {
+        var source = new Source(FileChannel.open(path, READ));
+        var first_level = out_levels.size;
+        var complete = false;
+        try {
+            var channel = source.channel;
+            var file_size = channel.size();
+
+            var buffer = read_at(channel, 0, (int) Math.min(8, file_size));
+            if (buffer.remaining() < 8 || buffer.getInt() != magic) {
+                throw new IOException("Not a world file: " + path);
+            }
+            var file_version = buffer.getInt();
+            if (file_version != version) {
+                throw new IOException("Unsupported world file version " + file_version + ": " + path);
+            }
+
+            var position = 8L;
+            var world_name = read_string(channel, position, file_size);
+            position += string_bytes;
+            var num_levels = read_at(channel, position, 4).getInt();
+            position += 4;
+
+            for (int i = 0; i < num_levels; i++) {
+                var id = read_at(channel, position, 4).getInt();
+                position += 4;
+                var name = read_string(channel, position, file_size);
+                position += string_bytes;
+
+                buffer = read_at(channel, position, 5 * 4);
+                var bounds = RectI.of(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+                var payload_size = buffer.getInt();
+                position += 5 * 4;
+                if (payload_size < 0 || position + payload_size > file_size) {
+                    throw new IOException("Level " + id + " runs past the end of " + path);
+                }
+
+                var level = new Level(new LevelInfo(name, bounds));
+                level.id = id;
+                level.encoded_layers = new Payload(source, position, payload_size);
+                position += payload_size;
+
+                out_levels.add(level);
+            }
+            complete = true;
+            return world_name;
+        } finally {
+            if (!complete) {
+                for (int i = first_level; i < out_levels.size; i++) {
+                    out_levels.get(i).dispose();
+                }
+                out_levels.truncate(first_level);
+            }
+            // NOTE: the levels' payloads hold the file open from here on, if there are none it's closed now
+            source.release();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+
+    /**
+     * A world file kept open for the levels still reading their layers from it,
+     * closed when the last of them lets go, which can happen on the saver thread
+     */
+    static class Source {
+        final FileChannel channel;
+        private final AtomicInteger refs;
+
+        Source(FileChannel channel) {
+            this.channel = channel;
+            this.refs = new AtomicInteger(1);
+        }
+
+        void acquire() {
+            refs.incrementAndGet();
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Where a level's encoded layers are in the world file it was read from.
+     * Holds a reference on the file until it's released, snapshots acquire one of their own
+     */
+    static class Payload {
+        final Source source;
+        final long offset;
+        final int size;
+
+        Payload(Source source, long offset, int size) {
+            this.source = source;
+            this.offset = offset;
+            this.size = size;
+            source.acquire();
+        }
+
+        Payload acquire() {
+            source.acquire();
+            return this;
+        }
+
+        void release() {
+            source.release();
+        }
+
+        ByteBuffer read() throws IOException {
+            var buffer = ByteBuffer.allocate(size);
+            while (buffer.hasRemaining()) {
+                if (source.channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("World file ended inside a level");
+                }
+            }
+            return buffer.flip();
+        }
+
+        void transfer_to(FileChannel target) throws IOException {
+            var done = 0L;
+            while (done < size) {
+                var transferred = source.channel.transferTo(offset + done, size - done, target);
+                if (transferred <= 0) {
+                    throw new EOFException("World file ended inside a level");
+                }
+                done += transferred;
+            }
+        }
+    }
+
+    // bytes taken by the last string read_string() read, including its length
+    private int string_bytes;
+
+    private String read_string(FileChannel channel, long position, long file_size) throws IOException {
+        var buffer = read_at(channel, position, (int) Math.min(Bytes.max_varint_size, file_size - position));
+        var length = Bytes.get_varint(buffer);
+        var length_bytes = buffer.position();
+        buffer = read_at(channel, position + length_bytes, length);
+        string_bytes = length_bytes + length;
+        return new String(buffer.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read size bytes at position into the header buffer, ready to get from
+     */
+    private ByteBuffer read_at(FileChannel channel, long position, int size) throws IOException {
+        header.clear();
+        header = Bytes.ensure(header, size);
+        header.limit(size);
+        while (header.hasRemaining()) {
+            if (channel.read(header, position + header.position()) < 0) {
+                throw new EOFException("World file ended early");
+            }
+        }
+        return header.flip();
+    }
+
+    private void encode_layers(WorldSnapshot.LevelSnapshot level) {
+        ensure(Bytes.max_varint_size);
+        Bytes.put_varint(payload, level.layers.size);
+
+        for (var layer : level.layers) {
+            ensure(1 + Bytes.string_size(layer.name) + Bytes.max_varint_size);
+            payload.put((byte) layer.type.ordinal());
+            Bytes.put_string(payload, layer.name);
+            Bytes.put_varint(payload, layer.grid_size);
+
+            switch (layer.type) {
+                case tile -> {
+                    ensure(Bytes.string_size(layer.tileset_filename) + Bytes.max_varint_size);
+                    Bytes.put_string(payload, layer.tileset_filename);
+                    Bytes.put_varint(payload, layer.tileset_grid_size);
+                    encode_tiles(layer);
+                }
+                case entity -> encode_entities(layer);
+            }
+        }
+    }
+
+    private void encode_tiles(WorldSnapshot.LayerSnapshot layer) {
+        ensure(2 * Bytes.max_varint_size);
+        Bytes.put_varint(payload, layer.cols);
+        Bytes.put_varint(payload, layer.rows);
+
+        var indices = layer.tileset_indices;
+        var i = 0;
+        while (i < indices.length) {
+            var value = indices[i];
+            var run_start = i;
+            while (i < indices.length && indices[i] == value) {
+                i++;
+            }
+            ensure(2 * Bytes.max_varint_size);
+            Bytes.put_varint(payload, i - run_start);
+            Bytes.put_zigzag(payload, value);
+        }
+    }
+
+    private void encode_entities(WorldSnapshot.LayerSnapshot layer) {
+        var store = layer.entities;
+
+        ensure(Bytes.max_varint_size);
+        Bytes.put_varint(payload, store.defs.size);
+        for (var def : store.defs) {
+            ensure(Bytes.string_size(def.name) + Bytes.max_varint_size);
+            Bytes.put_string(payload, def.name);
+            Bytes.put_varint(payload, def.fields.size);
+            for (var field : def.fields) {
+                ensure(Bytes.string_size(field.name) + 1);
+                Bytes.put_string(payload, field.name);
+                payload.put((byte) field.type.ordinal());
+            }
+        }
+
+        ensure(Bytes.max_varint_size);
+        Bytes.put_varint(payload, store.size);
+        for (int row = 0; row < store.size; row++) {
+            ensure(7 * Bytes.max_varint_size);
+            Bytes.put_varint(payload, store.type[row]);
+            Bytes.put_zigzag(payload, store.x[row]);
+            Bytes.put_zigzag(payload, store.y[row]);
+            Bytes.put_zigzag(payload, store.w[row]);
+            Bytes.put_zigzag(payload, store.h[row]);
+            Bytes.put_zigzag(payload, store.origin_x[row]);
+            Bytes.put_zigzag(payload, store.origin_y[row]);
+
+            var fields = store.def(row).fields;
+            for (int field = 0; field < fields.size; field++) {
+                switch (fields.get(field).type) {
+                    case int32 -> {
+                        ensure(Bytes.max_varint_size);
+                        Bytes.put_zigzag(payload, store.get_int(row, field));
+                    }
+                    case float32 -> {
+                        ensure(4);
+                        payload.putFloat(store.get_float(row, field));
+                    }
+                    case text -> {
+                        var text = store.get_text(row, field);
+                        ensure(Bytes.string_size(text));
+                        Bytes.put_string(payload, text);
+                    }
+                }
+            }
+        }
+    }
+
+    static void decode_layers(Level level, ByteBuffer buffer) {
+        var num_layers = Bytes.get_varint(buffer);
+        for (int i = 0; i < num_layers; i++) {
+            var type = Layer.Type.values()[buffer.get()];
+            var name = Bytes.get_string(buffer);
+            var grid_size = Bytes.get_varint(buffer);
+
+            switch (type) {
+                case tile -> {
+                    var layer = new Layer.Tiles(level);
+                    layer.attributes.put(Layer.NameAttrib.class, new Layer.NameAttrib(name));
+                    layer.attributes.put(Layer.GridAttrib.class, new Layer.GridAttrib(grid_size));
+                    layer.regenerate();
+
+                    var filename = Bytes.get_string(buffer);
+                    var tileset_grid_size = Bytes.get_varint(buffer);
+                    if (!filename.isEmpty()) {
+                        layer.get_attribute(Layer.TilesetAttrib.class).load(filename, tileset_grid_size);
+                    }
+
+                    decode_tiles((Layer.TileData) layer.data, buffer);
+                    level.add_layer(layer);
+                }
+                case entity -> {
+                    var layer = new Layer.Entities(level);
+                    layer.attributes.put(Layer.NameAttrib.class, new Layer.NameAttrib(name));
+                    layer.attributes.put(Layer.GridAttrib.class, new Layer.GridAttrib(grid_size));
+                    decode_entities((Layer.EntityData) layer.data, buffer);
+                    level.add_layer(layer);
+                }
+            }
+        }
+    }
+
+    private static void decode_tiles(Layer.TileData tile_data, ByteBuffer buffer) {
+        var cols = Bytes.get_varint(buffer);
+        var rows = Bytes.get_varint(buffer);
+        var num_cells = cols * rows;
+
+        // NOTE: the tile data was already sized from the level bounds and marked dirty,
+        //  so runs are written straight into it, clipped if the saved size doesn't match
+        var indices = tile_data.tileset_indices;
+        var same_size = (cols == tile_data.cols && rows == tile_data.rows);
+        var cell = 0;
+        while (cell < num_cells) {
+            var length = Bytes.get_varint(buffer);
+            var value = Bytes.get_zigzag(buffer);
+            if (same_size) {
+                Arrays.fill(indices, cell, cell + length, value);
+            } else {
+                for (int i = cell; i < cell + length; i++) {
+                    var x = i % cols;
+                    var y = i / cols;
+                    if (tile_data.in_bounds(x, y)) {
+                        indices[tile_data.index(x, y)] = value;
+                    }
+                }
+            }
+            cell += length;
+        }
+    }
+
+    private static void decode_entities(Layer.EntityData entity_data, ByteBuffer buffer) {
+        var store = entity_data.store;
+
+        // NOTE: defs are matched up with the store's by name, and their fields by name and type,
+        //  values are read as saved and dropped if the store's def doesn't have a matching field
+        var num_defs = Bytes.get_varint(buffer);
+        var saved_defs = new EntityDef[num_defs];
+        var types = new int[num_defs];
+        var field_maps = new int[num_defs][];
+        for (int i = 0; i < num_defs; i++) {
+            var def = new EntityDef(Bytes.get_string(buffer));
+            var num_fields = Bytes.get_varint(buffer);
+            for (int field = 0; field < num_fields; field++) {
+                var name = Bytes.get_string(buffer);
+                def.field(name, EntityDef.FieldType.values()[buffer.get()]);
+            }
+            saved_defs[i] = def;
+            types[i] = store.define(def);
+
+            var store_def = store.defs.get(types[i]);
+            field_maps[i] = new int[num_fields];
+            for (int field = 0; field < num_fields; field++) {
+                var saved_field = def.fields.get(field);
+                var index = store_def.field_index(saved_field.name);
+                var matches = (index != -1 && store_def.fields.get(index).type == saved_field.type);
+                field_maps[i][field] = matches ? index : -1;
+            }
+        }
+
+        var num_entities = Bytes.get_varint(buffer);
+        for (int i = 0; i < num_entities; i++) {
+            var saved_type = Bytes.get_varint(buffer);
+            var id = entity_data.add(types[saved_type],
+                    Bytes.get_zigzag(buffer), Bytes.get_zigzag(buffer),
+                    Bytes.get_zigzag(buffer), Bytes.get_zigzag(buffer),
+                    Bytes.get_zigzag(buffer), Bytes.get_zigzag(buffer));
+
+            var row = store.row(id);
+            var fields = saved_defs[saved_type].fields;
+            var field_map = field_maps[saved_type];
+            for (int field = 0; field < fields.size; field++) {
+                var index = field_map[field];
+                switch (fields.get(field).type) {
+                    case int32 -> {
+                        var value = Bytes.get_zigzag(buffer);
+                        if (index != -1) store.set_int(row, index, value);
+                    }
+                    case float32 -> {
+                        var value = buffer.getFloat();
+                        if (index != -1) store.set_float(row, index, value);
+                    }
+                    case text -> {
+                        var value = Bytes.get_string(buffer);
+                        if (index != -1) store.set_text(row, index, value);
+                    }
+                }
+            }
+        }
+    }
+
+    private void ensure(int needed) {
+        payload = Bytes.ensure(payload, needed);
+    }
+
+    private static void write_fully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.Gdx;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes world snapshots on a background thread so saving never stalls the render thread,
+ * one save at a time. Progress can be polled from the render thread while a save is running.
+ */
+public class WorldSaver {
+
+    private final ExecutorService executor;
+    private final WorldFile world_file;
+    private final AtomicInteger levels_written;
+
+    private volatile boolean saving;
+    private volatile int levels_total;
+
+    public WorldSaver() {
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "world-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.world_file = new WorldFile();
+        this.levels_written = new AtomicInteger();
+        this.saving = false;
+        this.levels_total = 0;
+    }
+
+    public boolean is_saving() {
+        return saving;
+    }
+
+    public int levels_written() {
+        return levels_written.get();
+    }
+
+    public int levels_total() {
+        return levels_total;
+    }
+
+    /**
+     * Start writing the snapshot to path in the background,
+     * if it succeeds on_complete is run on the render thread afterwards, and the save isn't over until it has
+     *
+     * @return false if a save is already in progress
+     */
+    public boolean save(WorldSnapshot snapshot, Path path, Runnable on_complete) {
+        if (saving) {
+            return false;
+        }
+
+        saving = true;
+        levels_total = snapshot.levels.size;
+        levels_written.set(0);
+
+        executor.execute(() -> {
+            var start = System.nanoTime();
+            var written = false;
+            try {
+                world_file.write(snapshot, path, levels_written);
+                written = true;
+                var millis = (System.nanoTime() - start) / 1_000_000;
+                Gdx.app.log("saved", path.getFileName() + " (" + levels_total + " levels, " + millis + " ms)");
+            } catch (IOException e) {
+                Gdx.app.error("failed", "World save", e);
+            } finally {
+                snapshot.dispose();
+
+                // NOTE: the next save can't start until on_complete has run, otherwise it could rotate
+                //  newer edits into the journal that on_complete is about to discard
+                if (written) {
+                    Gdx.app.postRunnable(() -> {
+                        try {
+                            on_complete.run();
+                        } finally {
+                            saving = false;
+                        }
+                    });
+                } else {
+                    saving = false;
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Wait for any save in progress to finish, then stop the background thread
+     */
+    public void dispose() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package lando.systems.led.world;
+
+import com.badlogic.gdx.utils.Array;
+import lando.systems.led.utils.RectI;
+
+/**
+ * A point in time copy of everything in a world that gets saved, safe to hand off to another thread.
+ * Taking one is cheap: tile indices are shared copy-on-write with the live tile data,
+ * entity columns are copied in bulk, and levels that were never decoded just pass along where their layers are
+ * in the world file, which stays open until the snapshot is disposed.
+ */
+public class WorldSnapshot {
+
+    public final String name;
+    public final Array<LevelSnapshot> levels;
+
+    public WorldSnapshot(World world) {
+        this.name = world.name;
+        this.levels = new Array<>(world.levels.size);
+        for (var level : world.levels) {
+            levels.add(new LevelSnapshot(level));
+        }
+    }
+
+    /**
+     * Let go of the world files that levels never decoded are still being copied from, once the snapshot is written
+     */
+    public void dispose() {
+        for (var level : levels) {
+            if (level.encoded_layers != null) {
+                level.encoded_layers.release();
+            }
+        }
+    }
+
+    public static class LevelSnapshot {
+        public final int id;
+        public final String name;
+        public final RectI pixel_bounds;
+        final WorldFile.Payload encoded_layers;
+        public final Array<LayerSnapshot> layers;
+
+        LevelSnapshot(Level level) {
+            this.id = level.id;
+            this.name = level.name;
+            this.pixel_bounds = RectI.of(level.pixel_bounds);
+            this.encoded_layers = (level.encoded_layers != null) ? level.encoded_layers.acquire() : null;
+            this.layers = new Array<>(level.layers.size());
+            for (var layer : level.layers) {
+                layers.add(new LayerSnapshot(layer));
+            }
+        }
+    }
+
+    public static class LayerSnapshot {
+        public final Layer.Type type;
+        public final String name;
+        public final int grid_size;
+
+        // tile layers
+        public String tileset_filename;
+        public int tileset_grid_size;
+        public int cols;
+        public int rows;
+        public int[] tileset_indices;
+
+        // entity layers
+        public EntityStore entities;
+
+        LayerSnapshot(Layer layer) {
+            this.type = layer.type;
+            this.name = layer.name();
+            this.grid_size = layer.get_attribute(Layer.GridAttrib.class).size;
+
+            switch (type) {
+                case tile -> {
+                    var tileset = layer.get_attribute(Layer.TilesetAttrib.class).tileset;
+                    var tile_data = (Layer.TileData) layer.data;
+                    tileset_filename = (tileset.filename != null) ? tileset.filename : "";
+                    tileset_grid_size = tileset.grid_size;
+                    cols = tile_data.cols;
+                    rows = tile_data.rows;
+                    tileset_indices = tile_data.share();
+                }
+                case entity -> {
+                    // NOTE: a straight copy of the columns, a few arraycopies even for big layers
+                    entities = ((Layer.EntityData) layer.data).store.copy();
+                }
+            }
+        }
+    }
+
+}
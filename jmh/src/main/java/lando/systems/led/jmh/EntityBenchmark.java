@@ -0,0 +1,124 @@
+package lando.systems.led.jmh;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.IntArray;
+import lando.systems.led.utils.RectI;
+import lando.systems.led.world.EntityDef;
+import lando.systems.led.world.EntityStore;
+import lando.systems.led.world.Layer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding entities in an entity layer, scattered about one every 32x32 pixels on average.
+ * Every other one is a coin with an int value field, for the filtered queries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+
+    static final int num_points = 1024;
+    static final int spacing = 32;
+
+    @Param({"1000", "10000", "100000"})
+    public int entities;
+
+    Layer.EntityData entity_data;
+    int area_size;
+    int coin_type;
+    int coin_value;
+
+    // points spread over the whole area, interleaved x, y
+    final int[] points = new int[num_points * 2];
+    final IntArray ids = new IntArray();
+    final RectI view = RectI.zero();
+
+    @Setup
+    public void setup() {
+        entity_data = new Layer.EntityData(Layer.GridAttrib.default_size);
+        area_size = (int) Math.sqrt(entities) * spacing;
+
+        var store = entity_data.store;
+        coin_type = store.define(new EntityDef("Coin").field("value", EntityDef.FieldType.int32));
+        coin_value = store.defs.get(coin_type).field_index("value");
+
+        var random = new RandomXS128(2);
+        for (int i = 0; i < entities; i++) {
+            var type = (i % 2 == 0) ? EntityStore.default_type : coin_type;
+            var size = 8 + random.nextInt(17);
+            var x = random.nextInt(area_size);
+            var y = random.nextInt(area_size);
+            var id = entity_data.add(type, x, y, size, size, size / 2, size / 2);
+            if (type == coin_type) {
+                store.set_int(store.row(id), coin_value, random.nextInt(100));
+            }
+        }
+
+        for (int i = 0; i < num_points; i++) {
+            points[i * 2]     = random.nextInt(area_size);
+            points[i * 2 + 1] = random.nextInt(area_size);
+        }
+    }
+
+    /**
+     * What hovering or clicking on an entity looks up
+     */
+    @Benchmark
+    @OperationsPerInvocation(num_points)
+    public void pick(Blackhole blackhole) {
+        for (int i = 0; i < num_points; i++) {
+            blackhole.consume(entity_data.pick(points[i * 2], points[i * 2 + 1]));
+        }
+    }
+
+    /**
+     * The culling query the renderer makes every frame, with a view about the size of the default camera
+     */
+    @Benchmark
+    @OperationsPerInvocation(num_points)
+    public void overlapping(Blackhole blackhole) {
+        for (int i = 0; i < num_points; i++) {
+            view.set(points[i * 2] - 320, points[i * 2 + 1] - 180, 640, 360);
+            blackhole.consume(entity_data.overlapping(view, ids));
+        }
+    }
+
+    /**
+     * Moving entities to random spots, nearly every move lands them in different cells
+     */
+    @Benchmark
+    @OperationsPerInvocation(num_points)
+    public void move() {
+        var store = entity_data.store;
+        for (int i = 0; i < num_points; i++) {
+            var id = store.id[i % store.size];
+            entity_data.move(id, points[i * 2], points[i * 2 + 1]);
+        }
+    }
+
+    /**
+     * A scan over the type column
+     */
+    @Benchmark
+    public IntArray of_type() {
+        ids.clear();
+        return entity_data.store.of_type(coin_type, ids);
+    }
+
+    /**
+     * A scan that also reads a field, the coins worth more than half
+     */
+    @Benchmark
+    public IntArray query() {
+        ids.clear();
+        return entity_data.store.query((store, row) ->
+                store.type[row] == coin_type && store.get_int(row, coin_value) >= 50, ids);
+    }
+
+}
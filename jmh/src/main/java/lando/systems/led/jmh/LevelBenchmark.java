@@ -0,0 +1,117 @@
+package lando.systems.led.jmh;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import lando.systems.led.benchmark.Headless;
+import lando.systems.led.benchmark.SyntheticWorld;
+import lando.systems.led.world.Layer;
+import lando.systems.led.world.Level;
+import lando.systems.led.world.TileBrush;
+import lando.systems.led.world.TilePattern;
+import lando.systems.led.world.World;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups and edits on a single level's tile layer, for a few level sizes
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LevelBenchmark {
+
+    static final int num_points = 1024;
+
+    // tiles along each side of the level
+    @Param({"16", "64", "256"})
+    public int size;
+
+    World world;
+    Level level;
+    Layer.Tiles layer;
+    int base_width;
+
+    // world points inside the level, interleaved x, y
+    final int[] points = new int[num_points * 2];
+    int next_point;
+
+    final TileBrush brush = new TileBrush();
+    final TilePattern[] patterns = new TilePattern[2];
+    int next_pattern;
+
+    @Setup
+    public void setup() {
+        Headless.start();
+
+        world = new World("Benchmark");
+        var levels = new Array<Level>();
+        SyntheticWorld.build(world, 1, size, size, 1, levels);
+        level = levels.first();
+        layer = level.get_layer(Layer.Tiles.class);
+        base_width = level.pixel_bounds.w;
+
+        var random = new RandomXS128(2);
+        for (int i = 0; i < num_points; i++) {
+            points[i * 2]     = level.pixel_bounds.x + random.nextInt(level.pixel_bounds.w);
+            points[i * 2 + 1] = level.pixel_bounds.y + random.nextInt(level.pixel_bounds.h);
+        }
+
+        // NOTE: two patterns stamped in turn, so every stamp actually changes the cells it covers
+        for (int i = 0; i < patterns.length; i++) {
+            var pattern = new TilePattern();
+            pattern.cols = 3;
+            pattern.rows = 3;
+            pattern.anchor_x = 1;
+            pattern.anchor_y = 1;
+            for (int cell = 0; cell < 9; cell++) {
+                pattern.indices[cell] = i * 9 + cell;
+            }
+            patterns[i] = pattern;
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        world.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(num_points)
+    public void point_in_tile(Blackhole blackhole) {
+        for (int i = 0; i < num_points; i++) {
+            blackhole.consume(level.point_in_tile(points[i * 2], points[i * 2 + 1]));
+        }
+    }
+
+    /**
+     * Resize by a column and back, the way dragging a level's edge does
+     */
+    @Benchmark
+    public Object regenerate() {
+        var grid_size = layer.get_attribute(Layer.GridAttrib.class).size;
+        level.pixel_bounds.w = (level.pixel_bounds.w == base_width) ? base_width + grid_size : base_width;
+        layer.regenerate();
+        return layer.data;
+    }
+
+    /**
+     * A single click with the paint tool and a 3x3 selection, including its undo record
+     */
+    @Benchmark
+    public void stamp() {
+        var i = next_point++ & (num_points - 1);
+        var pattern = patterns[next_pattern++ & 1];
+        var grid_size = layer.get_attribute(Layer.GridAttrib.class).size;
+        var x = (points[i * 2]     - level.pixel_bounds.x) / grid_size;
+        var y = (points[i * 2 + 1] - level.pixel_bounds.y) / grid_size;
+        brush.begin(level, layer);
+        brush.stamp(x, y, pattern);
+        brush.end();
+    }
+
+}
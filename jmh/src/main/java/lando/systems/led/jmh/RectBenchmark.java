@@ -0,0 +1,60 @@
+package lando.systems.led.jmh;
+
+import com.badlogic.gdx.math.RandomXS128;
+import lando.systems.led.utils.RectI;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RectI tests, against random rects that overlap about half the time
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RectBenchmark {
+
+    static final int num_rects = 1024;
+
+    final RectI[] rects = new RectI[num_rects];
+    final int[] points = new int[num_rects * 2];
+
+    @Setup
+    public void setup() {
+        var random = new RandomXS128(2);
+        for (int i = 0; i < num_rects; i++) {
+            rects[i] = RectI.of(random.nextInt(1000), random.nextInt(1000), 1 + random.nextInt(300), 1 + random.nextInt(300));
+            points[i * 2]     = random.nextInt(1300);
+            points[i * 2 + 1] = random.nextInt(1300);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(num_rects)
+    public void overlaps(Blackhole blackhole) {
+        for (int i = 0; i < num_rects; i++) {
+            blackhole.consume(rects[i].overlaps(rects[(i + 1) & (num_rects - 1)]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(num_rects)
+    public void contains_rect(Blackhole blackhole) {
+        for (int i = 0; i < num_rects; i++) {
+            blackhole.consume(rects[i].contains(rects[(i + 1) & (num_rects - 1)]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(num_rects)
+    public void contains_point(Blackhole blackhole) {
+        for (int i = 0; i < num_rects; i++) {
+            blackhole.consume(rects[i].contains(points[i * 2], points[i * 2 + 1]));
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package lando.systems.led.jmh;
+
+import com.badlogic.gdx.math.RandomXS128;
+import lando.systems.led.Assets;
+import lando.systems.led.benchmark.Headless;
+import lando.systems.led.benchmark.SyntheticWorld;
+import lando.systems.led.world.Tileset;
+import lando.systems.led.world.Tilesets;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up tile regions by tileset index, in random order like a layer with mixed tiles
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TilesetBenchmark {
+
+    static final int num_indices = 1024;
+
+    Tileset tileset;
+    final int[] indices = new int[num_indices];
+
+    @Setup
+    public void setup() {
+        Headless.start();
+
+        tileset = Tilesets.acquire(SyntheticWorld.default_tileset, SyntheticWorld.default_tileset_grid_size);
+        Assets.manager.finishLoading();
+        Tilesets.update();
+
+        // NOTE: a few out of range indices, those take the early out
+        var random = new RandomXS128(2);
+        var num_tiles = tileset.cols * tileset.rows;
+        for (int i = 0; i < num_indices; i++) {
+            indices[i] = random.nextInt(num_tiles + num_tiles / 16 + 1) - num_tiles / 32;
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        Tilesets.release(tileset);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(num_indices)
+    public void get(Blackhole blackhole) {
+        for (int i = 0; i < num_indices; i++) {
+            blackhole.consume(tileset.get(indices[i]));
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+package lando.systems.led.jmh;
+
+import com.badlogic.gdx.math.RandomXS128;
+import com.badlogic.gdx.utils.Array;
+import lando.systems.led.benchmark.Headless;
+import lando.systems.led.benchmark.SyntheticWorld;
+import lando.systems.led.utils.RectI;
+import lando.systems.led.world.Level;
+import lando.systems.led.world.World;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding levels in worlds of a few sizes, levels are small so it's the lookup that's measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorldBenchmark {
+
+    static final int num_points = 1024;
+    static final int level_size = 16;
+
+    @Param({"10", "100", "1000"})
+    public int levels;
+
+    World world;
+    RectI world_bounds;
+
+    // world points spread over the whole world, gaps included, interleaved x, y
+    final int[] points = new int[num_points * 2];
+    final Array<Level> overlapping = new Array<>();
+    final RectI view = RectI.zero();
+
+    @Setup
+    public void setup() {
+        Headless.start();
+
+        world = new World("Benchmark");
+        world_bounds = SyntheticWorld.build(world, levels, level_size, level_size, 1, new Array<>());
+
+        var random = new RandomXS128(2);
+        for (int i = 0; i < num_points; i++) {
+            points[i * 2]     = world_bounds.x + random.nextInt(world_bounds.w);
+            points[i * 2 + 1] = world_bounds.y + random.nextInt(world_bounds.h);
+        }
+    }
+
+    @TearDown
+    public void teardown() {
+        world.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(num_points)
+    public void pick_level_at(Blackhole blackhole) {
+        for (int i = 0; i < num_points; i++) {
+            blackhole.consume(world.pick_level_at(points[i * 2], points[i * 2 + 1]));
+        }
+    }
+
+    /**
+     * The query the renderer makes every frame, with a view about the size of the default camera
+     */
+    @Benchmark
+    @OperationsPerInvocation(num_points)
+    public void levels_overlapping(Blackhole blackhole) {
+        for (int i = 0; i < num_points; i++) {
+            view.set(points[i * 2] - 320, points[i * 2 + 1] - 180, 640, 360);
+            blackhole.consume(world.levels_overlapping(view, overlapping));
+        }
+    }
+
+}
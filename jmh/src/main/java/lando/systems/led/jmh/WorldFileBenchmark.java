@@ -0,0 +1,108 @@
+package lando.systems.led.jmh;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Json;
+import com.badlogic.gdx.utils.JsonWriter;
+import lando.systems.led.benchmark.Headless;
+import lando.systems.led.benchmark.SyntheticWorld;
+import lando.systems.led.utils.RectI;
+import lando.systems.led.world.Level;
+import lando.systems.led.world.LevelInfo;
+import lando.systems.led.world.World;
+import lando.systems.led.world.WorldFile;
+import lando.systems.led.world.WorldInfo;
+import lando.systems.led.world.WorldSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saving and loading whole worlds, in the binary world file format and the older json one
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorldFileBenchmark {
+
+    @Param({"10", "100"})
+    public int levels;
+
+    // tiles along each side of every level
+    @Param({"64", "256"})
+    public int size;
+
+    World world;
+    Path path;
+
+    final WorldFile world_file = new WorldFile();
+    final AtomicInteger levels_written = new AtomicInteger();
+    final Array<Level> loaded_levels = new Array<>();
+
+    final Json json = new Json(JsonWriter.OutputType.javascript);
+    final WorldInfo info = new WorldInfo();
+
+    @Setup
+    public void setup() throws IOException {
+        Headless.start();
+
+        world = new World("Benchmark");
+        var built_levels = new Array<Level>();
+        SyntheticWorld.build(world, levels, size, size, 1, built_levels);
+
+        path = Files.createTempFile("led-benchmark", ".led");
+        world_file.write(new WorldSnapshot(world), path, levels_written);
+
+        info.setName(world.name);
+        for (var level : built_levels) {
+            info.getLevels().add(new LevelInfo(level.name, RectI.of(level.pixel_bounds)));
+        }
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        world.dispose();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * What World.save() does, minus handing the write to the background thread
+     */
+    @Benchmark
+    public int save() throws IOException {
+        levels_written.set(0);
+        world_file.write(new WorldSnapshot(world), path, levels_written);
+        return levels_written.get();
+    }
+
+    /**
+     * What World.load() does, then decoding every level, which normally only happens as they're needed
+     */
+    @Benchmark
+    public int load() throws IOException {
+        world_file.read(path, loaded_levels);
+        var num_levels = loaded_levels.size;
+        for (var level : loaded_levels) {
+            level.ensure_loaded();
+            level.dispose();
+        }
+        loaded_levels.clear();
+        return num_levels;
+    }
+
+    /**
+     * Level names and bounds to json and back, the format worlds were saved in before the world file
+     */
+    @Benchmark
+    public WorldInfo json_round_trip() {
+        var text = json.toJson(info);
+        return json.fromJson(WorldInfo.class, text);
+    }
+
+}